@@ -0,0 +1,238 @@
+package api.idempotent.benchmark;
+
+import api.idempotent.ClientIpResolver;
+import api.idempotent.annotation.Idempotent;
+import api.idempotent.assign.RequestSignVerifier;
+import api.idempotent.assign.RsaKeyRegistry;
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.aspect.IdempotentAspect;
+import api.idempotent.spring.aspect.IdempotentCompletionNotifier;
+import api.idempotent.spring.aspect.IdempotentLeaseWatchdog;
+import api.idempotent.spring.aspect.IdempotentSingleFlight;
+import api.idempotent.spring.bloom.IdempotentBloomFilters;
+import api.idempotent.spring.cache.IdempotentLocalCache;
+import api.idempotent.spring.context.IdempotentContextProvider;
+import api.idempotent.spring.context.IdempotentContextResolver;
+import api.idempotent.spring.cache.IdempotentMethodCache;
+import api.idempotent.spring.exception.IdempotentException;
+import api.idempotent.spring.metrics.IdempotentMetrics;
+import api.idempotent.spring.store.IdempotentKeyLayout;
+import api.idempotent.spring.store.IdempotentResultCodec;
+import api.idempotent.spring.store.IdempotentStore;
+import api.idempotent.spring.store.MemoryIdempotentStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整拦截链路：Spring AOP代理 → 幂等切面 → 业务方法
+ * <p>
+ * 使用内存存储代替redis，测得的是切面本身（key生成、本地缓存、单飞合并、结果回放）的开销；
+ * 需要连同redis往返一起测量时参考 {@link StoreBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AspectBenchmark {
+
+	@Param({"SMALL", "MEDIUM"})
+	public Payloads size;
+
+	private AnnotationConfigApplicationContext context;
+	private OrderService orderService;
+	private long sequence;
+
+	@Setup
+	public void setup() {
+		context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+		orderService = context.getBean(OrderService.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+		context.close();
+	}
+
+	/**
+	 * 不经过切面的直接调用，作为基线
+	 */
+	@Benchmark
+	public String baseline() {
+		bindRequest();
+		return orderService.plain(++sequence);
+	}
+
+	/**
+	 * 每次都是新key：完整的获取 → 执行路径
+	 */
+	@Benchmark
+	public String acquire() {
+		bindRequest();
+		return orderService.create(++sequence);
+	}
+
+	/**
+	 * 同一key反复提交：命中本地缓存后被拒绝
+	 */
+	@Benchmark
+	public Object reject() {
+		bindRequest();
+		try {
+			return orderService.create(0L);
+		} catch (IdempotentException e) {
+			return e;
+		}
+	}
+
+	/**
+	 * 同一key反复提交：回放首次执行的结果
+	 */
+	@Benchmark
+	public String replay() {
+		bindRequest();
+		return orderService.replay(0L);
+	}
+
+	private void bindRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/order");
+		request.setContentType("application/json");
+		request.setContent(size.bytes());
+		request.setRemoteAddr("10.0.0.8");
+		request.setRemotePort(52314);
+		request.addHeader("token", "token-abc");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+	}
+
+	public static class OrderService {
+
+		public String plain(long orderId) {
+			return "ok-" + orderId;
+		}
+
+		@Idempotent(expireTime = 50, timeUnit = TimeUnit.MILLISECONDS, delKey = false)
+		public String create(long orderId) {
+			return "ok-" + orderId;
+		}
+
+		@Idempotent(expireTime = 10, timeUnit = TimeUnit.MINUTES, delKey = false, replayResult = true)
+		public String replay(long orderId) {
+			return "ok-" + orderId;
+		}
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@EnableAspectJAutoProxy
+	static class BenchmarkConfiguration {
+
+		@Bean
+		static IdempotentMethodCache methodCache(ObjectProvider<IdempotentProperties> idempotentProperties) {
+			return new IdempotentMethodCache(idempotentProperties);
+		}
+
+		@Bean
+		IdempotentProperties idempotentProperties() {
+			IdempotentProperties properties = new IdempotentProperties();
+			properties.getLocalCache().setEnabled(true);
+			return properties;
+		}
+
+		@Bean
+		IdempotentStore idempotentStore(IdempotentProperties idempotentProperties) {
+			return new MemoryIdempotentStore(idempotentProperties);
+		}
+
+		@Bean
+		IdempotentLocalCache localCache(IdempotentProperties idempotentProperties) {
+			return new IdempotentLocalCache(idempotentProperties);
+		}
+
+		@Bean
+		IdempotentResultCodec resultCodec(IdempotentProperties idempotentProperties) {
+			return new IdempotentResultCodec(idempotentProperties);
+		}
+
+		@Bean
+		IdempotentSingleFlight singleFlight() {
+			return new IdempotentSingleFlight();
+		}
+
+		@Bean
+		RsaKeyRegistry rsaKeyRegistry(IdempotentProperties idempotentProperties) {
+			return new RsaKeyRegistry(idempotentProperties);
+		}
+
+		@Bean
+		RequestSignVerifier requestSignVerifier(RsaKeyRegistry rsaKeyRegistry, IdempotentProperties idempotentProperties) {
+			return new RequestSignVerifier(rsaKeyRegistry, idempotentProperties);
+		}
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+
+		@Bean
+		IdempotentMetrics idempotentMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+			return new IdempotentMetrics(meterRegistry);
+		}
+
+		@Bean
+		ClientIpResolver clientIpResolver() {
+			return new ClientIpResolver(List.of(), ClientIpResolver.DEFAULT_HEADERS);
+		}
+
+		@Bean
+		IdempotentKeyLayout keyLayout(IdempotentProperties idempotentProperties) {
+			return new IdempotentKeyLayout(idempotentProperties);
+		}
+
+		@Bean
+		IdempotentBloomFilters bloomFilters(IdempotentProperties idempotentProperties,
+											ObjectProvider<RedisConnectionFactory> redisConnectionFactory) {
+			return new IdempotentBloomFilters(idempotentProperties, redisConnectionFactory);
+		}
+
+		@Bean
+		IdempotentContextResolver contextResolver(IdempotentProperties idempotentProperties,
+												  ObjectProvider<IdempotentContextProvider> providers) {
+			return new IdempotentContextResolver(idempotentProperties, providers);
+		}
+
+		@Bean
+		IdempotentLeaseWatchdog leaseWatchdog(IdempotentStore idempotentStore, IdempotentProperties idempotentProperties) {
+			return new IdempotentLeaseWatchdog(idempotentStore, idempotentProperties);
+		}
+
+		@Bean
+		IdempotentCompletionNotifier completionNotifier(IdempotentProperties idempotentProperties,
+														ObjectProvider<RedisConnectionFactory> redisConnectionFactory) {
+			return new IdempotentCompletionNotifier(idempotentProperties, redisConnectionFactory);
+		}
+
+		@Bean
+		IdempotentAspect idempotentAspect() {
+			return new IdempotentAspect();
+		}
+
+		@Bean
+		OrderService orderService() {
+			return new OrderService();
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package api.idempotent.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * <p>
+ * 默认运行全部基准、开启GC分析器（输出每次操作的分配字节数），并把结果以JSON写入
+ * {@code target/jmh-result.json}，便于CI保存和对比；可通过 {@code -Djmh.result=路径} 修改输出位置。
+ * 其余参数与JMH命令行一致，例如只跑key生成：{@code java -jar benchmarks.jar KeyDerivation -p size=LARGE}
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(System.getProperty("jmh.result", "target/jmh-result.json"));
+		if (commandLine.getIncludes().isEmpty()) {
+			builder.include("api\\.idempotent\\.benchmark\\..*");
+		}
+		new Runner(builder.build()).run();
+	}
+}
@@ -0,0 +1,139 @@
+package api.idempotent.benchmark;
+
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.bloom.RotatingBloomFilter;
+import api.idempotent.spring.store.MemoryIdempotentStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 概率模式（轮换布隆过滤器）对比逐key存储的判重开销与内存占用
+ * <p>
+ * 逐key存储以内存存储为代表，每个key保留一个带过期时间的条目，redis中的开销同样随key数线性增长；
+ * {@code retainedBytes} 为写入一百万个key后留存的堆内存，布隆过滤器只与误判率有关
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BloomFilterBenchmark {
+
+	private static final int MILLION = 1_000_000;
+	private static final String KEY_PREFIX = "idempotent:token-abc:10.0.0.8:52314:";
+
+	@Param({"perKey", "bloom"})
+	public String mode;
+
+	@Param({"0.01"})
+	public double fpp;
+
+	private Dedupe dedupe;
+
+	@Setup
+	public void setup() {
+		dedupe = create();
+	}
+
+	@TearDown
+	public void tearDown() {
+		dedupe.close();
+	}
+
+	@State(Scope.Thread)
+	public static class Keys {
+		private final String prefix = KEY_PREFIX + Thread.currentThread().threadId() + ":";
+		private long sequence;
+
+		String next() {
+			return prefix + (++sequence);
+		}
+	}
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Footprint {
+		public long retainedBytes;
+		/** 测量前保持可达，避免被提前回收 */
+		private Dedupe filled;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			retainedBytes = 0;
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean fresh(Keys keys) {
+		return dedupe.putIfAbsent(keys.next());
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean duplicate() {
+		return dedupe.putIfAbsent(KEY_PREFIX + "duplicate");
+	}
+
+	/**
+	 * 写入一百万个不同的key，记录留存的堆内存
+	 * <p>G1对大对象区域的统计不稳定，改用ParallelGC；计数按迭代累加，只测量一次</p>
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 1)
+	@Fork(value = 1, jvmArgsAppend = "-XX:+UseParallelGC")
+	public void fillMillion(Footprint footprint) {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long before = usedHeap(memory);
+		footprint.filled = create();
+		for (int i = 0; i < MILLION; i++) {
+			footprint.filled.putIfAbsent(KEY_PREFIX + i);
+		}
+		footprint.retainedBytes = usedHeap(memory) - before;
+		footprint.filled.close();
+		footprint.filled = null;
+	}
+
+	private Dedupe create() {
+		if ("bloom".equals(mode)) {
+			RotatingBloomFilter filter = new RotatingBloomFilter(TimeUnit.MINUTES.toMillis(10), 4, MILLION, fpp);
+			return new Dedupe() {
+				@Override
+				public boolean putIfAbsent(String key) {
+					return filter.putIfAbsent(key);
+				}
+			};
+		}
+		MemoryIdempotentStore store = new MemoryIdempotentStore(new IdempotentProperties());
+		return new Dedupe() {
+			@Override
+			public boolean putIfAbsent(String key) {
+				return store.acquire(key, 10, TimeUnit.MINUTES);
+			}
+
+			@Override
+			public void close() {
+				store.stop();
+			}
+		};
+	}
+
+	private static long usedHeap(MemoryMXBean memory) {
+		System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	private interface Dedupe {
+		boolean putIfAbsent(String key);
+
+		default void close() {
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package api.idempotent.benchmark;
+
+import api.idempotent.spring.aspect.CanonicalJsonHasher;
+import api.idempotent.spring.aspect.IdempotentKeyDigest;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求体标准化：原实现（解析为Map → TreeMap排序 → 重新序列化）对比流式规范化哈希
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyNormalizationBenchmark {
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	@Param({"SMALL", "MEDIUM", "LARGE"})
+	public Payloads size;
+
+	private byte[] body;
+	private String bodyText;
+
+	@Setup
+	public void setup() {
+		body = size.bytes();
+		bodyText = size.text();
+	}
+
+	@Benchmark
+	public String legacy() throws Exception {
+		Map<String, Object> requestBody = Legacy.getJsonData(bodyText);
+		return Legacy.normalizeRequestBody(requestBody);
+	}
+
+	@Benchmark
+	public String current() throws Exception {
+		IdempotentKeyDigest digest = IdempotentKeyDigest.begin();
+		try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+			CanonicalJsonHasher.digestJson(parser, digest);
+		}
+		return digest.appendHexDigest().toString();
+	}
+}
@@ -0,0 +1,162 @@
+package api.idempotent.benchmark;
+
+import api.idempotent.annotation.Idempotent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.reflections.Reflections;
+import org.reflections.scanners.Scanners;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.io.BufferedReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 优化前的实现（原样保留），作为基准测试的对照组
+ */
+final class Legacy {
+
+	private Legacy() {
+	}
+
+	/**
+	 * 原 RequestUtils.getJsonData：每次新建ObjectMapper，解析两次
+	 */
+	static Map<String, Object> getJsonData(String jsonBody) throws Exception {
+		if (jsonBody == null || jsonBody.trim().isEmpty()) {
+			return new HashMap<>();
+		}
+		ObjectMapper objectMapper = new ObjectMapper();
+		Object parsed = objectMapper.readValue(jsonBody, Object.class);
+		if (parsed instanceof Collection) {
+			List<?> temp = (List<?>) parsed;
+			Map<String, Object> result = new HashMap<>();
+			for (int i = 0; i < temp.size(); i++) {
+				result.put(String.valueOf(i), temp.get(i));
+			}
+			return result;
+		}
+		return objectMapper.readValue(jsonBody, new TypeReference<Map<String, Object>>() {
+		});
+	}
+
+	/**
+	 * 原 IdempotentAspect.normalizeRequestBody
+	 */
+	static String normalizeRequestBody(Map<String, Object> requestBody) throws Exception {
+		Map<String, Object> sortedMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		requestBody.entrySet().stream()
+				.filter(entry -> entry.getValue() != null)
+				.forEach(entry -> sortedMap.put(entry.getKey(), entry.getValue()));
+		return new ObjectMapper().writeValueAsString(sortedMap);
+	}
+
+	/**
+	 * 原 IdempotentAspect.buildKey 的拼接与摘要部分
+	 */
+	static String buildKey(String className, String methodName, Object[] args, String body,
+						   String tokenValue, String ipAddress, int remotePort) throws Exception {
+		int paramsHash = Arrays.toString(args).hashCode();
+		String rawKeyContent = String.format("%s.%s:%d", className, methodName, paramsHash);
+		Map<String, Object> requestBody = getJsonData(body);
+		if (!requestBody.isEmpty()) {
+			rawKeyContent += normalizeRequestBody(requestBody);
+		}
+		String port = String.valueOf(remotePort);
+		return "idempotent:" + tokenValue + ":" + ipAddress + ":" + port + ":" + generateSha256(rawKeyContent);
+	}
+
+	static String generateSha256(String input) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+		StringBuilder hexString = new StringBuilder();
+		for (byte b : hashBytes) {
+			String hex = Integer.toHexString(0xff & b);
+			if (hex.length() == 1) hexString.append('0');
+			hexString.append(hex);
+		}
+		return hexString.toString();
+	}
+
+	/**
+	 * 原验签：每次解析公钥并新建Signature
+	 */
+	static boolean verify(String data, String sign, String base64PublicKey) throws Exception {
+		byte[] keyBytes = Base64.getDecoder().decode(base64PublicKey);
+		PublicKey publicKey = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(keyBytes));
+		Signature signature = Signature.getInstance("SHA256withRSA");
+		signature.initVerify(publicKey);
+		signature.update(data.getBytes(StandardCharsets.UTF_8));
+		return signature.verify(Base64.getDecoder().decode(sign));
+	}
+
+	/**
+	 * 原 IdempotentMethodCache.init：启动时按配置的包路径扫描类路径，解析每个幂等方法的参数名与key表达式
+	 */
+	static Map<String, Expression> scanIdempotentMethods(String basePackage) {
+		SpelExpressionParser parser = new SpelExpressionParser();
+		DefaultParameterNameDiscoverer nameDiscoverer = new DefaultParameterNameDiscoverer();
+		Map<String, Expression> methodMetaMap = new HashMap<>();
+		Reflections reflections = new Reflections(basePackage, Scanners.MethodsAnnotated);
+		for (Method method : reflections.getMethodsAnnotatedWith(Idempotent.class)) {
+			Idempotent idempotent = method.getAnnotation(Idempotent.class);
+			String key = method.getDeclaringClass().getName() + "#" + method.getName();
+			nameDiscoverer.getParameterNames(method);
+			methodMetaMap.put(key, idempotent.key().isEmpty() ? null : parser.parseExpression(idempotent.key()));
+		}
+		return methodMetaMap;
+	}
+
+	/**
+	 * 原 IdempotentAspect.verifySign：每次新建ObjectMapper解析请求体，逐个字段转换后再排序拼接
+	 */
+	@SuppressWarnings("unchecked")
+	static boolean verifySign(HttpServletRequest request, String base64PublicKey) throws Exception {
+		Map<String, Object> paramsToSign = new HashMap<>();
+		request.getParameterMap().forEach((k, v) -> paramsToSign.put(k, v[0]));
+		if (request.getContentType() != null && request.getContentType().contains("application/json")) {
+			StringBuilder sb = new StringBuilder();
+			BufferedReader reader = request.getReader();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line);
+			}
+			String body = sb.toString();
+			if (!body.isEmpty()) {
+				ObjectMapper mapper = new ObjectMapper();
+				Map<String, Object> jsonMap = mapper.readValue(body, Map.class);
+				jsonMap.forEach((k, v) -> paramsToSign.put(k, v == null ? "" : v.toString()));
+			}
+		}
+		String clientSign = (String) paramsToSign.remove("sign");
+		paramsToSign.forEach((key, value) -> {
+			if (value instanceof LocalDate) {
+				paramsToSign.put(key, ((LocalDate) value).format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+			} else if (value instanceof LocalDateTime) {
+				paramsToSign.put(key, ((LocalDateTime) value).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+			} else {
+				paramsToSign.put(key, value.toString());
+			}
+		});
+		String dataToVerify = paramsToSign.entrySet()
+				.stream()
+				.filter(entry -> entry.getValue() != null && !"".equals(entry.getValue()))
+				.sorted(Map.Entry.comparingByKey())
+				.map(entry -> entry.getKey() + "=" + entry.getValue())
+				.collect(Collectors.joining("&"));
+		return verify(dataToVerify, clientSign, base64PublicKey);
+	}
+}
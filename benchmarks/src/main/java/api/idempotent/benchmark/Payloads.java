@@ -0,0 +1,69 @@
+package api.idempotent.benchmark;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基准测试用的请求体
+ * <ul>
+ *     <li>SMALL：表单式下单请求，约10个字段</li>
+ *     <li>MEDIUM：带收货地址和数十个商品行的订单</li>
+ *     <li>LARGE：批量导入，上千条嵌套记录</li>
+ * </ul>
+ */
+public enum Payloads {
+
+	SMALL(order(3)),
+	MEDIUM(order(40)),
+	LARGE(batch(1500));
+
+	private final byte[] json;
+
+	Payloads(String json) {
+		this.json = json.getBytes(StandardCharsets.UTF_8);
+	}
+
+	public byte[] bytes() {
+		return json;
+	}
+
+	public String text() {
+		return new String(json, StandardCharsets.UTF_8);
+	}
+
+	private static String order(int lines) {
+		StringBuilder sb = new StringBuilder(256 + lines * 160);
+		sb.append("{\"orderNo\":\"SO202410160001\",\"userId\":10086,\"channel\":\"APP\",\"amount\":199.90,")
+				.append("\"couponId\":null,\"remark\":\"请尽快发货\",\"invoice\":false,")
+				.append("\"address\":{\"province\":\"浙江省\",\"city\":\"杭州市\",\"detail\":\"西湖区文三路 100 号\",\"zip\":\"310000\"},")
+				.append("\"items\":[");
+		for (int i = 0; i < lines; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"skuId\":").append(100000 + i)
+					.append(",\"name\":\"商品-").append(i)
+					.append("\",\"quantity\":").append(i % 5 + 1)
+					.append(",\"price\":").append(9.9 + i)
+					.append(",\"tags\":[\"promo\",\"new\"],\"gift\":null}");
+		}
+		return sb.append("]}").toString();
+	}
+
+	private static String batch(int records) {
+		StringBuilder sb = new StringBuilder(records * 200);
+		sb.append("{\"batchId\":\"IMPORT-20241016\",\"operator\":\"admin\",\"records\":[");
+		for (int i = 0; i < records; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"id\":").append(i)
+					.append(",\"mobile\":\"1380000").append(String.format("%04d", i))
+					.append("\",\"name\":\"user").append(i)
+					.append("\",\"score\":").append(i * 0.5)
+					.append(",\"active\":").append(i % 2 == 0)
+					.append(",\"profile\":{\"level\":").append(i % 10)
+					.append(",\"city\":\"city").append(i % 50).append("\",\"extra\":null}}");
+		}
+		return sb.append("]}").toString();
+	}
+}
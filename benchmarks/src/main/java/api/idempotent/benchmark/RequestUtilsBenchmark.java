@@ -0,0 +1,62 @@
+package api.idempotent.benchmark;
+
+import api.idempotent.RequestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestUtils 中处于拦截热路径上的方法
+ * <p>
+ * 请求体只能读取一次，getRequestBody 每次调用都会新建 MockHttpServletRequest，
+ * 对照组 {@link #newRequest()} 给出这部分的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestUtilsBenchmark {
+
+	@Param({"SMALL", "MEDIUM", "LARGE"})
+	public Payloads size;
+
+	private MockHttpServletRequest headerRequest;
+
+	@Setup
+	public void setup() {
+		headerRequest = newRequest();
+		headerRequest.addHeader("X-Forwarded-For", "203.0.113.7, 10.0.0.1, 10.0.0.2");
+		headerRequest.addHeader("Idempotent-Token", "token-abc");
+		headerRequest.addHeader("User-Agent", "Mozilla/5.0");
+		headerRequest.addHeader("Accept", "application/json");
+	}
+
+	@Benchmark
+	public MockHttpServletRequest newRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/order");
+		request.setContentType("application/json");
+		request.setContent(size.bytes());
+		request.setRemoteAddr("10.0.0.8");
+		request.setRemotePort(52314);
+		return request;
+	}
+
+	@Benchmark
+	public Map<String, Object> getRequestBody() {
+		return RequestUtils.getRequestBody(newRequest());
+	}
+
+	@Benchmark
+	public String getHeaderWithVariants() {
+		return RequestUtils.getHeaderWithVariants(headerRequest, "idempotent_token");
+	}
+
+	@Benchmark
+	public String getIpAddress() {
+		return RequestUtils.getIpAddress(headerRequest);
+	}
+}
@@ -0,0 +1,106 @@
+package api.idempotent.benchmark;
+
+import api.idempotent.assign.RequestSignVerifier;
+import api.idempotent.assign.RsaKeyRegistry;
+import api.idempotent.assign.RsaUtil;
+import api.idempotent.spring.IdempotentProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 验签：原实现（每次解析公钥、新建Signature）对比公钥缓存 + 复用Signature
+ * <p>
+ * {@code legacyRequest}/{@code currentRequest} 测量切面中完整的请求验签：收集表单与JSON请求体参数、
+ * 转换字段、排序拼接验签原文再验签，每次操作新建一个携带签名JSON请求体的请求
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignVerifyBenchmark {
+
+	private String publicKey;
+	private String content;
+	private String sign;
+	private RsaKeyRegistry registry;
+	private RequestSignVerifier verifier;
+	private byte[] signedBody;
+
+	@Setup
+	public void setup() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		KeyPair keyPair = generator.generateKeyPair();
+		publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("appId", "app-001");
+		params.put("timestamp", "1729036800000");
+		params.put("nonce", "8f14e45fceea167a");
+		params.put("orderNo", "SO202410160001");
+		params.put("amount", "128.50");
+		params.put("remark", "");
+		content = RsaUtil.buildSignContent(params);
+
+		Signature signer = Signature.getInstance("SHA256withRSA");
+		signer.initSign(keyPair.getPrivate());
+		signer.update(content.getBytes(StandardCharsets.UTF_8));
+		sign = Base64.getEncoder().encodeToString(signer.sign());
+
+		IdempotentProperties properties = new IdempotentProperties();
+		properties.setPublicKey(publicKey);
+		registry = new RsaKeyRegistry(properties);
+		registry.register("k1", publicKey);
+		verifier = new RequestSignVerifier(registry, properties);
+
+		Map<String, Object> body = new LinkedHashMap<>(params);
+		body.put("sign", sign);
+		signedBody = new ObjectMapper().writeValueAsBytes(body);
+	}
+
+	private MockHttpServletRequest signedRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/orders");
+		request.setContentType("application/json");
+		request.setContent(signedBody);
+		return request;
+	}
+
+	@Benchmark
+	public boolean legacy() throws Exception {
+		return Legacy.verify(content, sign, publicKey);
+	}
+
+	@Benchmark
+	public boolean current() throws Exception {
+		return RsaUtil.verify(content, sign, registry.resolve(null));
+	}
+
+	@Benchmark
+	public boolean currentWithKeyId() throws Exception {
+		return RsaUtil.verify(content, sign, registry.resolve("k1"));
+	}
+
+	@Benchmark
+	public boolean legacyRequest() throws Exception {
+		return Legacy.verifySign(signedRequest(), publicKey);
+	}
+
+	@Benchmark
+	public MockHttpServletRequest currentRequest() throws Exception {
+		MockHttpServletRequest request = signedRequest();
+		verifier.verify(request);
+		return request;
+	}
+}
@@ -0,0 +1,62 @@
+package api.idempotent.benchmark;
+
+import api.idempotent.benchmark.startup.StartupFixtures;
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.cache.IdempotentMethodCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动耗时：原实现（上下文刷新后按包路径做Reflections类路径扫描）对比
+ * 当前实现（bean创建时由 {@link IdempotentMethodCache} 收集幂等方法）
+ * <p>
+ * 每次操作启动并关闭一个注册了N个幂等业务bean的上下文，两种方式的上下文内容相同。
+ * 原实现的扫描耗时取决于扫描范围内的类路径大小而不是幂等方法数，实际项目通常配置应用根包，开销大于此处的单个包；
+ * 从打包后的jar运行时扫描需遍历整个jar。默认测量预热后的启动，测冷启动时加 {@code -wi 0 -f 10}。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(2)
+public class StartupBenchmark {
+
+	private static final String FIXTURE_PACKAGE = "api.idempotent.benchmark.startup";
+
+	@Param({"8", "64"})
+	public int beans;
+
+	@Benchmark
+	public int legacy() {
+		try (GenericApplicationContext context = context()) {
+			context.refresh();
+			return Legacy.scanIdempotentMethods(FIXTURE_PACKAGE).size();
+		}
+	}
+
+	@Benchmark
+	public int current() {
+		try (GenericApplicationContext context = context()) {
+			context.registerBean(IdempotentMethodCache.class);
+			context.refresh();
+			return context.getBeanDefinitionCount();
+		}
+	}
+
+	private GenericApplicationContext context() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		context.registerBean(IdempotentProperties.class);
+		for (Class<?> service : StartupFixtures.SERVICES.subList(0, beans)) {
+			registerService(context, service);
+		}
+		return context;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> void registerService(GenericApplicationContext context, Class<?> service) {
+		context.registerBean((Class<T>) service);
+	}
+}
@@ -0,0 +1,88 @@
+package api.idempotent.benchmark;
+
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.store.IdempotentStore;
+import api.idempotent.spring.store.MemoryIdempotentStore;
+import api.idempotent.spring.store.RedisIdempotentStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等存储的占用/释放开销
+ * <p>
+ * 默认只跑内存存储；本地有redis时用 {@code -p store=memory,redis} 一并测量，
+ * 地址通过 {@code -Dredis.host} / {@code -Dredis.port} 指定（默认 localhost:6379）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreBenchmark {
+
+	@Param({"memory"})
+	public String store;
+
+	private IdempotentStore idempotentStore;
+	private LettuceConnectionFactory connectionFactory;
+
+	@Setup
+	public void setup() {
+		if ("redis".equals(store)) {
+			RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+					System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+			connectionFactory = new LettuceConnectionFactory(configuration);
+			connectionFactory.afterPropertiesSet();
+			RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+			redisTemplate.setConnectionFactory(connectionFactory);
+			redisTemplate.setKeySerializer(new StringRedisSerializer());
+			redisTemplate.setValueSerializer(new StringRedisSerializer());
+			redisTemplate.afterPropertiesSet();
+			// 只测量 acquire/release，不需要延迟删除和巡检
+			idempotentStore = new RedisIdempotentStore(redisTemplate, null, null);
+		} else {
+			idempotentStore = new MemoryIdempotentStore(new IdempotentProperties());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (idempotentStore instanceof MemoryIdempotentStore memoryStore) {
+			memoryStore.stop();
+		}
+		if (connectionFactory != null) {
+			connectionFactory.destroy();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Keys {
+		private final String prefix = "idempotent:bench:" + Thread.currentThread().threadId() + ":";
+		private long sequence;
+
+		String next() {
+			return prefix + (++sequence);
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean acquireRelease(Keys keys) {
+		String key = keys.next();
+		boolean acquired = idempotentStore.acquire(key, 30, TimeUnit.SECONDS);
+		idempotentStore.release(key);
+		return acquired;
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean acquireDuplicate(Keys keys) {
+		return idempotentStore.acquire("idempotent:bench:duplicate", 30, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,530 @@
+package api.idempotent.benchmark.startup;
+
+import api.idempotent.annotation.Idempotent;
+
+import java.util.List;
+
+/**
+ * 启动基准使用的业务bean：每个类声明一个带key表达式的幂等方法
+ * <p>放在独立的包中，原实现按此包路径做类路径扫描</p>
+ */
+public final class StartupFixtures {
+
+	/** 全部业务bean类型，按需取前N个注册 */
+	public static final List<Class<?>> SERVICES = List.of(
+			Service00.class,
+			Service01.class,
+			Service02.class,
+			Service03.class,
+			Service04.class,
+			Service05.class,
+			Service06.class,
+			Service07.class,
+			Service08.class,
+			Service09.class,
+			Service10.class,
+			Service11.class,
+			Service12.class,
+			Service13.class,
+			Service14.class,
+			Service15.class,
+			Service16.class,
+			Service17.class,
+			Service18.class,
+			Service19.class,
+			Service20.class,
+			Service21.class,
+			Service22.class,
+			Service23.class,
+			Service24.class,
+			Service25.class,
+			Service26.class,
+			Service27.class,
+			Service28.class,
+			Service29.class,
+			Service30.class,
+			Service31.class,
+			Service32.class,
+			Service33.class,
+			Service34.class,
+			Service35.class,
+			Service36.class,
+			Service37.class,
+			Service38.class,
+			Service39.class,
+			Service40.class,
+			Service41.class,
+			Service42.class,
+			Service43.class,
+			Service44.class,
+			Service45.class,
+			Service46.class,
+			Service47.class,
+			Service48.class,
+			Service49.class,
+			Service50.class,
+			Service51.class,
+			Service52.class,
+			Service53.class,
+			Service54.class,
+			Service55.class,
+			Service56.class,
+			Service57.class,
+			Service58.class,
+			Service59.class,
+			Service60.class,
+			Service61.class,
+			Service62.class,
+			Service63.class);
+
+	private StartupFixtures() {
+	}
+
+	public static class Service00 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service01 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service02 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service03 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service04 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service05 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service06 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service07 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service08 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service09 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service10 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service11 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service12 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service13 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service14 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service15 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service16 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service17 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service18 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service19 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service20 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service21 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service22 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service23 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service24 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service25 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service26 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service27 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service28 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service29 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service30 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service31 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service32 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service33 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service34 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service35 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service36 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service37 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service38 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service39 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service40 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service41 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service42 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service43 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service44 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service45 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service46 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service47 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service48 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service49 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service50 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service51 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service52 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service53 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service54 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service55 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service56 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service57 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service58 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service59 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service60 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service61 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service62 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+
+	public static class Service63 {
+		@Idempotent(key = "#orderId + ':' + #amount")
+		public String submit(String orderId, long amount) {
+			return orderId;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package api.idempotent;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * 客户端ip解析
+ * <ul>
+ *     <li>按配置顺序读取转发头；配置了可信代理时，只有直连地址为可信代理才读取转发头，
+ *     并从右向左跳过可信代理，取第一个不可信的地址</li>
+ *     <li>转发链在原字符串上按下标扫描，可信代理按预先解析的CIDR比较，除返回值外不产生中间对象</li>
+ *     <li>本机访问时替换为本机地址；本机地址在创建时解析一次，之后不再变化，同一请求前后生成的key一致，请求线程也不会因DNS阻塞</li>
+ *     <li>解析结果保存在请求属性中，同一请求只解析一次</li>
+ * </ul>
+ */
+@Slf4j
+public class ClientIpResolver {
+
+	/** 保存解析结果的请求属性 */
+	public static final String ATTRIBUTE = ClientIpResolver.class.getName() + ".CLIENT_IP";
+	/** 默认依次读取的转发头 */
+	public static final List<String> DEFAULT_HEADERS = List.of(
+			"X-Forwarded-For", "Proxy-Client-IP", "WL-Proxy-Client-IP", "HTTP_CLIENT_IP", "HTTP_X_FORWARDED_FOR");
+	private static final String UNKNOWN = "unknown";
+
+	private final String[] headers;
+	private final boolean trustAll;
+	private final int[] ipv4Networks;
+	private final int[] ipv4Masks;
+	private final byte[][] ipv6Networks;
+	private final int[] ipv6Prefixes;
+	/** 本机地址，解析失败时为null，本机访问保持回环地址 */
+	private final String localAddress;
+
+	/**
+	 * @param trustedProxies 可信代理（CIDR或单个ip），为空时信任所有来源的转发头
+	 * @param headers        依次读取的转发头
+	 */
+	public ClientIpResolver(List<String> trustedProxies, List<String> headers) {
+		this.headers = headers.toArray(new String[0]);
+		List<int[]> ipv4 = new ArrayList<>();
+		List<byte[]> ipv6 = new ArrayList<>();
+		List<Integer> ipv6Prefix = new ArrayList<>();
+		for (String cidr : trustedProxies) {
+			parseCidr(cidr.trim(), ipv4, ipv6, ipv6Prefix);
+		}
+		this.trustAll = trustedProxies.isEmpty();
+		this.ipv4Networks = new int[ipv4.size()];
+		this.ipv4Masks = new int[ipv4.size()];
+		for (int i = 0; i < ipv4.size(); i++) {
+			ipv4Networks[i] = ipv4.get(i)[0];
+			ipv4Masks[i] = ipv4.get(i)[1];
+		}
+		this.ipv6Networks = ipv6.toArray(new byte[0][]);
+		this.ipv6Prefixes = ipv6Prefix.stream().mapToInt(Integer::intValue).toArray();
+		this.localAddress = resolveLocalAddress();
+	}
+
+	public String resolve(HttpServletRequest request) {
+		Object resolved = request.getAttribute(ATTRIBUTE);
+		if (resolved instanceof String ip) {
+			return ip;
+		}
+		String ip = resolve(request::getHeader, request.getRemoteAddr());
+		if (ip != null) {
+			request.setAttribute(ATTRIBUTE, ip);
+		}
+		return ip;
+	}
+
+	public String resolve(ServerHttpRequest request) {
+		InetSocketAddress remoteAddress = request.getRemoteAddress();
+		String remoteAddr = null;
+		if (remoteAddress != null) {
+			remoteAddr = remoteAddress.getAddress() != null
+					? remoteAddress.getAddress().getHostAddress() : remoteAddress.getHostString();
+		}
+		return resolve(request.getHeaders()::getFirst, remoteAddr);
+	}
+
+	/**
+	 * 不读写请求属性的解析
+	 */
+	String resolve(UnaryOperator<String> header, String remoteAddr) {
+		String ip = null;
+		if (trustAll || (remoteAddr != null && isTrusted(remoteAddr, 0, remoteAddr.length()))) {
+			for (String name : headers) {
+				String value = header.apply(name);
+				if (value != null && !value.isEmpty() && !UNKNOWN.equalsIgnoreCase(value)) {
+					ip = trustAll ? firstEntry(value) : firstUntrustedEntry(value);
+					if (ip != null) {
+						break;
+					}
+				}
+			}
+		}
+		if (ip == null) {
+			ip = remoteAddr;
+		}
+		// 本机访问：取本机配置的ip
+		return localAddress != null && isLoopback(ip) ? localAddress : ip;
+	}
+
+	/**
+	 * 转发链中的第一个地址（即客户端声明的地址）
+	 */
+	private static String firstEntry(String chain) {
+		int end = chain.indexOf(',');
+		return trimmed(chain, 0, end < 0 ? chain.length() : end);
+	}
+
+	/**
+	 * 从右向左跳过可信代理后的第一个地址；全部为可信代理时取最左侧地址
+	 */
+	private String firstUntrustedEntry(String chain) {
+		int end = chain.length();
+		int leftStart = -1;
+		int leftEnd = -1;
+		while (end >= 0) {
+			int start = chain.lastIndexOf(',', end - 1) + 1;
+			int from = start;
+			int to = end;
+			while (from < to && chain.charAt(from) == ' ') {
+				from++;
+			}
+			while (to > from && chain.charAt(to - 1) == ' ') {
+				to--;
+			}
+			if (from < to) {
+				if (!isTrusted(chain, from, to)) {
+					return chain.substring(from, to);
+				}
+				leftStart = from;
+				leftEnd = to;
+			}
+			end = start - 1;
+		}
+		return leftStart >= 0 ? chain.substring(leftStart, leftEnd) : null;
+	}
+
+	private static String trimmed(String value, int from, int to) {
+		while (from < to && value.charAt(from) == ' ') {
+			from++;
+		}
+		while (to > from && value.charAt(to - 1) == ' ') {
+			to--;
+		}
+		return from < to ? value.substring(from, to) : null;
+	}
+
+	private boolean isTrusted(String value, int from, int to) {
+		if (value.indexOf(':', from) >= 0 && value.indexOf(':', from) < to) {
+			if (ipv6Networks.length == 0) {
+				return false;
+			}
+			byte[] address = parseIpv6(value.substring(from, to));
+			if (address == null) {
+				return false;
+			}
+			for (int i = 0; i < ipv6Networks.length; i++) {
+				if (matchesPrefix(address, ipv6Networks[i], ipv6Prefixes[i])) {
+					return true;
+				}
+			}
+			return false;
+		}
+		long address = parseIpv4(value, from, to);
+		if (address < 0) {
+			return false;
+		}
+		for (int i = 0; i < ipv4Networks.length; i++) {
+			if (((int) address & ipv4Masks[i]) == ipv4Networks[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 在原字符串上解析点分十进制ipv4
+	 *
+	 * @return 地址的无符号整数值，格式不合法时返回-1
+	 */
+	static long parseIpv4(String value, int from, int to) {
+		long address = 0;
+		int octets = 0;
+		int octet = -1;
+		for (int i = from; i < to; i++) {
+			char c = value.charAt(i);
+			if (c >= '0' && c <= '9') {
+				octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+				if (octet > 255) {
+					return -1;
+				}
+			} else if (c == '.' && octet >= 0 && octets < 3) {
+				address = (address << 8) | octet;
+				octets++;
+				octet = -1;
+			} else {
+				return -1;
+			}
+		}
+		if (octet < 0 || octets != 3) {
+			return -1;
+		}
+		return (address << 8) | octet;
+	}
+
+	/**
+	 * 解析ipv6字面量；加上方括号后非法输入会直接失败，不会被当作主机名去查询DNS
+	 */
+	private static byte[] parseIpv6(String literal) {
+		for (int i = 0; i < literal.length(); i++) {
+			char c = literal.charAt(i);
+			if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+				return null;
+			}
+		}
+		try {
+			return InetAddress.getByName("[" + literal + "]").getAddress();
+		} catch (UnknownHostException e) {
+			return null;
+		}
+	}
+
+	private static boolean matchesPrefix(byte[] address, byte[] network, int prefix) {
+		if (address.length != network.length) {
+			return false;
+		}
+		int bytes = prefix / 8;
+		for (int i = 0; i < bytes; i++) {
+			if (address[i] != network[i]) {
+				return false;
+			}
+		}
+		int bits = prefix % 8;
+		if (bits == 0) {
+			return true;
+		}
+		int mask = 0xFF << (8 - bits);
+		return (address[bytes] & mask) == (network[bytes] & mask);
+	}
+
+	private static void parseCidr(String cidr, List<int[]> ipv4, List<byte[]> ipv6, List<Integer> ipv6Prefix) {
+		int slash = cidr.indexOf('/');
+		String address = slash < 0 ? cidr : cidr.substring(0, slash);
+		if (address.indexOf(':') >= 0) {
+			byte[] network = parseIpv6(address);
+			int prefix = slash < 0 ? 128 : parsePrefix(cidr, slash, 128);
+			if (network == null || network.length != 16) {
+				throw new IllegalArgumentException("可信代理地址格式错误: " + cidr);
+			}
+			ipv6.add(network);
+			ipv6Prefix.add(prefix);
+			return;
+		}
+		long network = parseIpv4(address, 0, address.length());
+		if (network < 0) {
+			throw new IllegalArgumentException("可信代理地址格式错误: " + cidr);
+		}
+		int prefix = slash < 0 ? 32 : parsePrefix(cidr, slash, 32);
+		int mask = prefix == 0 ? 0 : -1 << (32 - prefix);
+		ipv4.add(new int[]{(int) network & mask, mask});
+	}
+
+	private static int parsePrefix(String cidr, int slash, int max) {
+		try {
+			int prefix = Integer.parseInt(cidr.substring(slash + 1));
+			if (prefix >= 0 && prefix <= max) {
+				return prefix;
+			}
+		} catch (NumberFormatException ignored) {
+			// 下面统一抛出
+		}
+		throw new IllegalArgumentException("可信代理地址格式错误: " + cidr);
+	}
+
+	private static boolean isLoopback(String ip) {
+		return "127.0.0.1".equals(ip) || "localhost".equalsIgnoreCase(ip) || "0:0:0:0:0:0:0:1".equals(ip) || "::1".equals(ip);
+	}
+
+	private static String resolveLocalAddress() {
+		try {
+			return InetAddress.getLocalHost().getHostAddress();
+		} catch (UnknownHostException e) {
+			log.warn("本机地址解析失败，本机访问将使用回环地址: {}", e.getMessage());
+			return null;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package api.idempotent;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 预先解析的请求头名称匹配器
+ * <p>按配置的请求头名称构建一次，规则与原先的变体枚举一致：大小写不敏感，横线与下划线视为相同。</p>
+ * <p>Servlet与WebFlux的请求头查找本身大小写不敏感，因此只需按不同分隔符形式直接查找（1~3次）；
+ * 都未命中时再遍历一次请求头，兼容大小写敏感的请求包装类。整个过程不产生任何中间字符串。</p>
+ */
+public final class HeaderNameMatcher {
+
+	private static final HeaderNameMatcher NONE = new HeaderNameMatcher(null, new String[0], "");
+
+	/** 配置的原始名称 */
+	private final String headerName;
+	/** 依次直接查找的名称：原始名称及分隔符互换后的形式 */
+	private final String[] candidates;
+	/** 小写且下划线统一为横线的名称，用于遍历时比较 */
+	private final String normalized;
+
+	private HeaderNameMatcher(String headerName, String[] candidates, String normalized) {
+		this.headerName = headerName;
+		this.candidates = candidates;
+		this.normalized = normalized;
+	}
+
+	/**
+	 * @param headerName 请求头名称，为空时得到的匹配器始终返回null
+	 */
+	public static HeaderNameMatcher of(String headerName) {
+		if (!StringUtils.hasText(headerName)) {
+			return NONE;
+		}
+		List<String> candidates = new ArrayList<>(3);
+		candidates.add(headerName);
+		if (headerName.indexOf('-') >= 0) {
+			addCandidate(candidates, headerName.replace('-', '_'));
+		}
+		if (headerName.indexOf('_') >= 0) {
+			addCandidate(candidates, headerName.replace('_', '-'));
+		}
+		String normalized = headerName.replace('_', '-').toLowerCase(Locale.ROOT);
+		return new HeaderNameMatcher(headerName, candidates.toArray(new String[0]), normalized);
+	}
+
+	private static void addCandidate(List<String> candidates, String candidate) {
+		for (String existing : candidates) {
+			if (existing.equalsIgnoreCase(candidate)) {
+				return;
+			}
+		}
+		candidates.add(candidate);
+	}
+
+	public String getHeaderName() {
+		return headerName;
+	}
+
+	/**
+	 * 名称是否与配置的请求头相同（大小写不敏感，横线与下划线视为相同）
+	 */
+	public boolean matches(String name) {
+		if (name == null || name.length() != normalized.length()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (fold(name.charAt(i)) != normalized.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 取第一个有值的匹配请求头
+	 *
+	 * @return 未找到时返回null
+	 */
+	public String resolve(HttpServletRequest request) {
+		if (candidates.length == 0) {
+			return null;
+		}
+		for (String candidate : candidates) {
+			String value = request.getHeader(candidate);
+			if (StringUtils.hasText(value)) {
+				return value;
+			}
+		}
+		Enumeration<String> names = request.getHeaderNames();
+		while (names != null && names.hasMoreElements()) {
+			String name = names.nextElement();
+			if (matches(name)) {
+				String value = request.getHeader(name);
+				if (StringUtils.hasText(value)) {
+					return value;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 取第一个有值的匹配请求头（WebFlux请求）
+	 *
+	 * @return 未找到时返回null
+	 */
+	public String resolve(HttpHeaders headers) {
+		if (candidates.length == 0) {
+			return null;
+		}
+		for (String candidate : candidates) {
+			String value = headers.getFirst(candidate);
+			if (StringUtils.hasText(value)) {
+				return value;
+			}
+		}
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (matches(header.getKey()) && !header.getValue().isEmpty()
+					&& StringUtils.hasText(header.getValue().get(0))) {
+				return header.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	private static char fold(char c) {
+		if (c == '_') {
+			return '-';
+		}
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : Character.toLowerCase(c);
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(headerName);
+	}
+}
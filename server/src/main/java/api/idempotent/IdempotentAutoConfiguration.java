@@ -4,12 +4,28 @@ package api.idempotent;
 
 import api.idempotent.spring.IdempotentProperties;
 import api.idempotent.spring.aspect.IdempotentAspect;
+import api.idempotent.spring.monitor.IdempotentKeyMonitor;
+import api.idempotent.spring.monitor.RedisDelayedDeleteService;
+import api.idempotent.spring.reactive.ReactiveIdempotentAspect;
+import api.idempotent.spring.reactive.ReactiveIdempotentStore;
+import api.idempotent.spring.reactive.ReactiveRedisIdempotentStore;
+import api.idempotent.spring.reactive.ReactiveRequestContextFilter;
+import api.idempotent.spring.store.IdempotentKeyLayout;
+import api.idempotent.spring.store.IdempotentStore;
+import api.idempotent.spring.store.MemoryIdempotentStore;
+import api.idempotent.spring.store.RedisIdempotentStore;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
 
 /**
  * 幂等自动配置
@@ -41,4 +57,103 @@ public class IdempotentAutoConfiguration {
 	public IdempotentProperties defaultIdempotentProperties() {
 		return new IdempotentProperties(); // 使用构造器中的默认值
 	}
+
+	/**
+	 * 客户端ip解析（idempotent.client-ip），同时注册给 {@link RequestUtils#getIpAddress}
+	 */
+	@Bean
+	@ConditionalOnMissingBean(ClientIpResolver.class)
+	public ClientIpResolver clientIpResolver(IdempotentProperties idempotentProperties) {
+		IdempotentProperties.ClientIp config = idempotentProperties.getClientIp();
+		ClientIpResolver resolver = new ClientIpResolver(config.getTrustedProxies(), config.getHeaders());
+		RequestUtils.useIpResolver(resolver);
+		return resolver;
+	}
+
+	/**
+	 * 幂等key与延迟删除队列的布局（idempotent.cluster）
+	 */
+	@Bean
+	@ConditionalOnMissingBean(IdempotentKeyLayout.class)
+	public IdempotentKeyLayout idempotentKeyLayout(IdempotentProperties idempotentProperties) {
+		return new IdempotentKeyLayout(idempotentProperties);
+	}
+
+	/**
+	 * 批量幂等操作
+	 */
+	@Bean
+	@ConditionalOnMissingBean(IdempotentTemplate.class)
+	public IdempotentTemplate idempotentTemplate(IdempotentStore idempotentStore, IdempotentKeyLayout idempotentKeyLayout) {
+		return new IdempotentTemplate(idempotentStore, idempotentKeyLayout);
+	}
+
+	/**
+	 * 默认的redis幂等存储
+	 * <p>与原先一样按名称使用名为 redisTemplate 的bean：Spring Boot自动配置的是 {@code RedisTemplate<Object, Object>}，
+	 * 按泛型匹配会找不到；不限定名称时又会与 stringRedisTemplate 冲突。</p>
+	 */
+	@Bean
+	@ConditionalOnMissingBean(IdempotentStore.class)
+	@ConditionalOnProperty(prefix = "idempotent", name = "store", havingValue = "redis", matchIfMissing = true)
+	@SuppressWarnings("unchecked")
+	public IdempotentStore redisIdempotentStore(@Qualifier("redisTemplate") RedisTemplate<?, ?> redisTemplate,
+												RedisDelayedDeleteService redisDelayedDeleteService,
+												IdempotentKeyMonitor idempotentKeyMonitor) {
+		return new RedisIdempotentStore((RedisTemplate<String, Object>) redisTemplate, redisDelayedDeleteService,
+				idempotentKeyMonitor);
+	}
+
+	/**
+	 * 内存幂等存储（idempotent.store=memory）
+	 */
+	@Bean
+	@ConditionalOnMissingBean(IdempotentStore.class)
+	@ConditionalOnProperty(prefix = "idempotent", name = "store", havingValue = "memory")
+	public IdempotentStore memoryIdempotentStore(IdempotentProperties idempotentProperties) {
+		return new MemoryIdempotentStore(idempotentProperties);
+	}
+
+	/**
+	 * 响应式支持：类路径中有Reactor时拦截返回 Mono/Flux 的 @Idempotent 方法
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(name = "reactor.core.publisher.Mono")
+	static class ReactiveIdempotentConfiguration {
+
+		@Bean
+		public ReactiveIdempotentAspect reactiveIdempotentAspect() {
+			return new ReactiveIdempotentAspect();
+		}
+
+		/**
+		 * 默认的响应式redis幂等存储（需要Lettuce）
+		 */
+		@Bean
+		@ConditionalOnMissingBean(ReactiveIdempotentStore.class)
+		@ConditionalOnClass(name = "io.lettuce.core.RedisClient")
+		@ConditionalOnProperty(prefix = "idempotent", name = "store", havingValue = "redis", matchIfMissing = true)
+		public ReactiveIdempotentStore reactiveIdempotentStore(ReactiveRedisConnectionFactory connectionFactory) {
+			return new ReactiveRedisIdempotentStore(connectionFactory);
+		}
+
+		/**
+		 * 内存存储本身不阻塞，直接适配
+		 */
+		@Bean
+		@ConditionalOnMissingBean(ReactiveIdempotentStore.class)
+		@ConditionalOnProperty(prefix = "idempotent", name = "store", havingValue = "memory")
+		public ReactiveIdempotentStore reactiveMemoryIdempotentStore(IdempotentStore idempotentStore) {
+			return ReactiveIdempotentStore.nonBlocking(idempotentStore);
+		}
+
+		/**
+		 * WebFlux下把请求写入Reactor上下文
+		 */
+		@Bean
+		@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+		public ReactiveRequestContextFilter reactiveRequestContextFilter() {
+			return new ReactiveRequestContextFilter();
+		}
+	}
 }
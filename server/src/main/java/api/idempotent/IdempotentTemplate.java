@@ -0,0 +1,85 @@
+package api.idempotent;
+
+import api.idempotent.spring.aspect.IdempotentKeyDigest;
+import api.idempotent.spring.store.IdempotentKeyLayout;
+import api.idempotent.spring.store.IdempotentStore;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 批量幂等操作，供批量导入接口、MQ消费者等一次处理多条数据的场景使用
+ * <p>每个元素按 namespace + 元素标识生成独立的幂等key，与切面使用同样的前缀和集群分片布局；
+ * redis存储下一批key的占用或查询由一个lua脚本完成（集群模式下每个slot一个脚本），返回的位图中第i位对应第i个元素。</p>
+ * <p>脚本执行期间redis不处理其他命令，单批建议控制在几千条以内。</p>
+ *
+ * <pre>{@code
+ * List<Message> accepted = idempotentTemplate.acquireEach("order-sync", messages, Message::getId, 1, TimeUnit.DAYS);
+ * }</pre>
+ */
+public class IdempotentTemplate {
+
+	private final IdempotentStore idempotentStore;
+	private final IdempotentKeyLayout keyLayout;
+
+	public IdempotentTemplate(IdempotentStore idempotentStore, IdempotentKeyLayout keyLayout) {
+		this.idempotentStore = idempotentStore;
+		this.keyLayout = keyLayout;
+	}
+
+	/**
+	 * 批量占用
+	 *
+	 * @return 第i位为1表示第i个元素首次出现并已占用，为0表示重复
+	 */
+	public BitSet acquire(String namespace, List<String> ids, long ttl, TimeUnit timeUnit) {
+		return idempotentStore.acquireAll(keys(namespace, ids), ttl, timeUnit);
+	}
+
+	/**
+	 * 批量占用，只返回首次出现的元素（保持原有顺序）
+	 */
+	public <T> List<T> acquireEach(String namespace, List<T> items, Function<? super T, String> idMapper,
+								   long ttl, TimeUnit timeUnit) {
+		List<String> ids = new ArrayList<>(items.size());
+		for (T item : items) {
+			ids.add(idMapper.apply(item));
+		}
+		BitSet acquired = acquire(namespace, ids, ttl, timeUnit);
+		List<T> accepted = new ArrayList<>(acquired.cardinality());
+		for (int i = acquired.nextSetBit(0); i >= 0; i = acquired.nextSetBit(i + 1)) {
+			accepted.add(items.get(i));
+		}
+		return accepted;
+	}
+
+	/**
+	 * 批量查询，不占用
+	 *
+	 * @return 第i位为1表示第i个元素已被占用
+	 */
+	public BitSet exists(String namespace, List<String> ids) {
+		return idempotentStore.existsAll(keys(namespace, ids));
+	}
+
+	/**
+	 * 批量释放，例如处理失败需要允许重试的元素
+	 */
+	public void release(String namespace, List<String> ids) {
+		idempotentStore.releaseAll(keys(namespace, ids));
+	}
+
+	/**
+	 * 元素对应的幂等key：{@code idempotent:[{n}:]<namespace>:<sha256(namespace:id)>}
+	 */
+	public List<String> keys(String namespace, List<String> ids) {
+		List<String> keys = new ArrayList<>(ids.size());
+		for (String id : ids) {
+			keys.add(keyLayout.build(IdempotentKeyDigest.begin().append(namespace).append(':').append(id), namespace));
+		}
+		return keys;
+	}
+}
@@ -1,11 +1,12 @@
 package api.idempotent;
 
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.util.StringUtils;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
@@ -16,10 +17,9 @@ import java.io.InputStreamReader;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.URLDecoder;
-import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +32,9 @@ import java.util.stream.Collectors;
 public class RequestUtils {
 
 	private static final ObjectMapper objectMapper = new ObjectMapper();
+	private static final Map<String, HeaderNameMatcher> HEADER_MATCHERS = new ConcurrentHashMap<>();
+	/** 自动配置注册的ip解析器，与切面使用同一套可信代理配置；未注册时使用 {@link DefaultIpResolver} */
+	private static volatile ClientIpResolver ipResolver;
 
 	/**
 	 * 获取当前请求
@@ -47,6 +50,14 @@ public class RequestUtils {
 		}
 	}
 
+	/**
+	 * 获取当前请求，当前线程不在servlet请求中（消息监听、定时任务等）时返回null
+	 */
+	public static HttpServletRequest findCurrentRequest() {
+		return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs
+				? attrs.getRequest() : null;
+	}
+
 	/**
 	 * 获取Headers
 	 *
@@ -94,45 +105,37 @@ public class RequestUtils {
 	 * @return {@link String }
 	 */
 	public static String getIpAddress(HttpServletRequest request) {
-		String ip = request.getHeader("x-forwarded-for");
-		if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-			ip = request.getHeader("Proxy-Client-IP");
-		}
-		if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-			ip = request.getHeader("WL-Proxy-Client-IP");
-		}
-		if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-			ip = request.getHeader("HTTP_CLIENT_IP");
-		}
-		if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-			ip = request.getHeader("HTTP_X_FORWARDED_FOR");
-		}
-		if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-			ip = request.getRemoteAddr();
-		}
-		// 本机访问
-		if ("localhost".equalsIgnoreCase(ip) || "127.0.0.1".equalsIgnoreCase(ip) || "0:0:0:0:0:0:0:1".equalsIgnoreCase(ip)) {
-			// 根据网卡取本机配置的IP
-			InetAddress inet;
-			try {
-				inet = InetAddress.getLocalHost();
-				ip = inet.getHostAddress();
-			} catch (UnknownHostException e) {
-				e.printStackTrace();
-			}
-		}
-		// 对于通过多个代理的情况，第一个IP为客户端真实IP,多个IP按照','分割
-		if (null != ip && ip.length() > 15) {
-			if (ip.indexOf(",") > 15) {
-				ip = ip.substring(0, ip.indexOf(","));
-			}
-		}
+		return ipResolver().resolve(request::getHeader, request.getRemoteAddr());
+	}
 
-		if (ip != null && ip.contains(",")) {
-			String[] split = ip.split(",");
-			ip = split[0];
-		}
-		return ip;
+	/**
+	 * 获取ip地址（WebFlux请求）
+	 *
+	 * @param request 请求
+	 * @return {@link String }
+	 */
+	public static String getIpAddress(ServerHttpRequest request) {
+		return ipResolver().resolve(request);
+	}
+
+	/**
+	 * 注册应用使用的ip解析器，由自动配置在创建解析器bean时调用
+	 * <p>解析器创建时会解析本机地址（阻塞的DNS查询），注册后请求路径上不再创建解析器</p>
+	 */
+	public static void useIpResolver(ClientIpResolver resolver) {
+		ipResolver = resolver;
+	}
+
+	private static ClientIpResolver ipResolver() {
+		ClientIpResolver resolver = ipResolver;
+		return resolver != null ? resolver : DefaultIpResolver.INSTANCE;
+	}
+
+	/**
+	 * 未注册解析器时（如非Spring环境）的默认解析：信任所有转发头，取其中第一个ip；首次使用时才创建
+	 */
+	private static final class DefaultIpResolver {
+		private static final ClientIpResolver INSTANCE = new ClientIpResolver(List.of(), ClientIpResolver.DEFAULT_HEADERS);
 	}
 
 	/**
@@ -181,7 +184,7 @@ public class RequestUtils {
 	}
 
 	private static Map<String, Object> getJsonData(HttpServletRequest request) throws IOException {
-		// 读取请求体内容为字符串
+		// 1. 读取请求体内容为字符串
 		String jsonBody = request.getReader().lines().collect(Collectors.joining());
 
 		// 2. 处理空请求体
@@ -189,13 +192,10 @@ public class RequestUtils {
 			return new HashMap<>();
 		}
 
-
-		ObjectMapper objectMapper = new ObjectMapper();
-		// 3. 解析JSON为通用对象
+		// 3. 只解析一次，复用共享的ObjectMapper
 		Object parsed = objectMapper.readValue(jsonBody, Object.class);
 		// 4. 处理不同JSON结构
-		if (parsed instanceof Collection) {
-			List temp = (List) parsed;
+		if (parsed instanceof List<?> temp) {
 			// 数组类型特殊处理
 			Map<String, Object> result = new HashMap<>();
 			for (int i = 0; i < temp.size(); i++) {
@@ -203,10 +203,12 @@ public class RequestUtils {
 			}
 			return result;
 		}
-
-		// 使用Jackson库解析JSON字符串
-		return objectMapper.readValue(jsonBody, new TypeReference<Map<String, Object>>() {
-		});
+		if (parsed instanceof Map<?, ?> map) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> result = (Map<String, Object>) map;
+			return result;
+		}
+		return new HashMap<>();
 	}
 
 
@@ -260,70 +262,24 @@ public class RequestUtils {
 	 * @return 找到的第一个有效Header值，未找到返回null
 	 */
 	public static String getHeaderWithVariants(HttpServletRequest request, String headerKey) {
-		if (!StringUtils.hasText(headerKey)) {
-			return null;
-		}
-
-		// 定义所有可能的Header Key变体
-		Set<String> possibleKeys = generateHeaderKeyVariants(headerKey);
-
-		// 按顺序尝试所有可能Key
-		for (String key : possibleKeys) {
-			String value = request.getHeader(key);
-			if (StringUtils.hasText(value)) {
-				return value;
-			}
-		}
-		return null;
+		return headerMatcher(headerKey).resolve(request);
 	}
 
 	/**
-	 * 生成指定Header Key的所有可能变体格式
-	 *
-	 * @param headerKey 原始Header Key
-	 * @return 包含所有唯一变体的有序集合
+	 * 获取Header值（WebFlux请求），规则同 {@link #getHeaderWithVariants(HttpServletRequest, String)}
 	 */
-	private static Set<String> generateHeaderKeyVariants(String headerKey) {
-		Set<String> variants = new LinkedHashSet<>();
-
-		// 1. 原始Key
-		variants.add(headerKey);
-
-		// 2. 大小写变体
-		variants.add(headerKey.toLowerCase());
-		variants.add(headerKey.toUpperCase());
-		variants.add(capitalizeEachWord(headerKey, '-'));
-
-		// 3. 分隔符变体（横线转下划线）
-		if (headerKey.contains("-")) {
-			String underscoreKey = headerKey.replace('-', '_');
-			variants.add(underscoreKey);
-			variants.add(underscoreKey.toLowerCase());
-			variants.add(underscoreKey.toUpperCase());
-			variants.add(capitalizeEachWord(underscoreKey, '_'));
-		}
-
-		// 4. 分隔符变体（下划线转横线）- 仅当原始key包含下划线时
-		if (headerKey.contains("_")) {
-			String dashKey = headerKey.replace('_', '-');
-			variants.add(dashKey);
-			variants.add(dashKey.toLowerCase());
-			variants.add(dashKey.toUpperCase());
-			variants.add(capitalizeEachWord(dashKey, '-'));
-		}
-
-		return variants;
+	public static String getHeaderWithVariants(HttpHeaders headers, String headerKey) {
+		return headerMatcher(headerKey).resolve(headers);
 	}
 
-	// 辅助方法：将横线分隔的单词首字母大写（e.g., "olink-cdn-token" -> "Olink-Cdn-Token"）
-	private static String capitalizeEachWord(String str, char delimiter) {
-		if (!StringUtils.hasText(str)) {
-			return str;
+	/**
+	 * 按名称缓存的请求头匹配器（名称来自注解和配置，数量有限）
+	 */
+	private static HeaderNameMatcher headerMatcher(String headerKey) {
+		if (!StringUtils.hasText(headerKey)) {
+			return HeaderNameMatcher.of(null);
 		}
-		String[] parts = str.split(Pattern.quote(String.valueOf(delimiter)));
-		return Arrays.stream(parts)
-				.map(part -> part.substring(0, 1).toUpperCase() + part.substring(1).toLowerCase())
-				.collect(Collectors.joining(String.valueOf(delimiter)));
+		return HEADER_MATCHERS.computeIfAbsent(headerKey, HeaderNameMatcher::of);
 	}
 
 
@@ -14,6 +14,8 @@ public @interface Idempotent {
 	/**
 	 * <p>如果是实体类的话,默认拦截不会生效. objects.toString()会返回不同地址.</p>
 	 * 幂等操作的唯一标识，使用spring el表达式 用#来引用方法参数
+	 * <p>消息监听、定时任务等没有请求的调用建议配置为业务唯一标识，如 {@code #message.id}；
+	 * 未配置时按全部参数的toString生成key，参数toString不能区分消息时会被误判为重复。</p>
 	 *
 	 * @return Spring-EL expression
 	 */
@@ -55,6 +57,40 @@ public @interface Idempotent {
 	 */
 	boolean delKey() default false;
 
+	/**
+	 * 是否缓存首次执行的返回值
+	 * <p>开启后首次执行成功的返回值会以紧凑的二进制形式存入幂等key（与key同有效期），
+	 * 重复请求直接返回该结果，不再执行方法也不抛出异常；首次请求仍在执行中时按原方式拒绝。</p>
+	 *
+	 * @return boolean
+	 */
+	boolean replayResult() default false;
+
+	/**
+	 * 是否开启租约模式
+	 * <p>开启后占用时只设置较短的租约有效期（idempotent.lease.lease-millis），方法执行期间由共享的续期线程
+	 * 批量延长，执行耗时不必预估；方法结束后key的有效期重新设为 expireTime（或按delKey释放）。
+	 * 适用于执行时间长且波动大的方法，对返回 Mono/Flux 的方法和概率模式不生效。</p>
+	 *
+	 * @return boolean
+	 */
+	boolean lease() default false;
+
+	/**
+	 * 本节点并发的相同请求的处理方式 - 默认 直接拒绝
+	 *
+	 * @return ConcurrentPolicy
+	 */
+	ConcurrentPolicy concurrentPolicy() default ConcurrentPolicy.REJECT;
+
+	/**
+	 * 并发请求等待首个请求结果的最长时间（毫秒），仅 {@link ConcurrentPolicy#WAIT} 和
+	 * {@link ConcurrentPolicy#DISTRIBUTED_WAIT} 时生效
+	 *
+	 * @return long
+	 */
+	long concurrentWaitMillis() default 3000;
+
 	/**
 	 * 幂等验证类型（新增） - 默认 宽泛模式
 	 *
@@ -81,7 +117,36 @@ public @interface Idempotent {
 		/**
 		 * 宽松模式：仅验证请求标识符(ID/token)的重复性
 		 */
-		LENIENT
+		LENIENT,
+
+		/**
+		 * 概率模式：key只写入本地按时间分桶轮换的布隆过滤器（可选经redis位图合并），不再为每个请求写redis key，
+		 * 适用于埋点上报、点赞投票等量大且允许少量误判的接口
+		 * <p>新请求有 idempotent.bloom.fpp 的概率被误判为重复；写入的key无法移除，delKey与replayResult不生效。</p>
+		 */
+		PROBABILISTIC
 	}
 	boolean enableSignVerify() default false;
+
+	/**
+	 * 本节点并发相同请求的处理方式
+	 */
+	enum ConcurrentPolicy {
+		/**
+		 * 直接拒绝：与首个请求执行中时的重复请求一致，抛出幂等异常
+		 */
+		REJECT,
+
+		/**
+		 * 等待：挂到首个请求上，返回其执行结果；首个请求失败或等待超时时抛出幂等异常
+		 */
+		WAIT,
+
+		/**
+		 * 分布式等待：首个请求在本节点时挂到其上等待，在其他节点执行时订阅其完成通知（redis pub/sub）等待；
+		 * 无论在哪个节点，完成后开启replayResult时返回首个请求的结果，否则或首个请求失败、等待超时时抛出幂等异常。
+		 * key上会额外记录成功/失败状态，适用于返回 CompletableFuture 或同步的方法
+		 */
+		DISTRIBUTED_WAIT
+	}
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package api.idempotent.assign;
+
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.exception.IdempotentException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 请求验签
+ * <p>表单参数与JSON请求体的顶层字段（同名时以请求体为准）去掉sign后按参数名排序，
+ * 跳过空值拼接为 {@code key1=value1&key2=value2} 作为验签原文，结果与 {@link RsaUtil#buildSignContent} 一致。</p>
+ * <p>参数在收集时即转为字符串并按名称有序存放，拼接时不再排序；请求体使用共享的ObjectMapper解析，
+ * 已缓存的请求体直接按字节解析。</p>
+ */
+@Slf4j
+@Component
+public class RequestSignVerifier {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private final RsaKeyRegistry rsaKeyRegistry;
+	private final IdempotentProperties idempotentProperties;
+
+	public RequestSignVerifier(RsaKeyRegistry rsaKeyRegistry, IdempotentProperties idempotentProperties) {
+		this.rsaKeyRegistry = rsaKeyRegistry;
+		this.idempotentProperties = idempotentProperties;
+	}
+
+	/**
+	 * 校验请求签名，不通过时抛出 {@link IdempotentException}
+	 *
+	 * @param request 当前请求，为空时视为非HTTP调用
+	 */
+	public void verify(HttpServletRequest request) throws Exception {
+		if (request == null) {
+			throw new IdempotentException("签名校验失败：验签只能在HTTP请求中使用");
+		}
+		Map<String, String> paramsToSign = getAllParams(request);
+
+		String clientSign = paramsToSign.remove("sign");
+		if (clientSign == null) {
+			throw new IdempotentException("签名校验失败：缺少'sign'参数");
+		}
+
+		// 1. 构造待签名字符串（如 key1=value1&key2=value2...）
+		String dataToVerify = buildSignContent(paramsToSign);
+
+		// 2. 验签
+		// 按请求头中的密钥ID选择公钥，未携带时使用默认公钥
+		PublicKey publicKey = rsaKeyRegistry.resolve(request.getHeader(idempotentProperties.getKeyIdHeader()));
+		boolean verifyResult = RsaUtil.verify(dataToVerify, clientSign, publicKey);
+
+		log.debug("验签原文: {}, 客户端签名: {}", dataToVerify, clientSign);
+
+		if (!verifyResult) {
+			throw new IdempotentException("签名校验失败，参数可能被篡改");
+		}
+		log.info("API签名验证通过。");
+	}
+
+	/**
+	 * 收集待签名参数，值统一转为字符串，JSON中的null记为空串
+	 */
+	private Map<String, String> getAllParams(HttpServletRequest request) {
+		Map<String, String> params = new TreeMap<>();
+		// 1. 先取表单参数
+		request.getParameterMap().forEach((k, v) -> params.put(k, v[0]));
+
+		// 2. 如果是JSON，读取body
+		if (request.getContentType() != null && request.getContentType().contains("application/json")) {
+			try {
+				Map<?, ?> jsonMap = readJsonBody(request);
+				if (jsonMap != null) {
+					jsonMap.forEach((k, v) -> params.put(String.valueOf(k), v == null ? "" : v.toString()));
+				}
+			} catch (Exception e) {
+				throw new IdempotentException(e);
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * 读取JSON请求体，空请求体返回null
+	 * <p>已被 {@link ContentCachingRequestWrapper} 缓存的请求体直接解析（UTF-8时不再转换为字符串），避免只能单次读取</p>
+	 */
+	private static Map<?, ?> readJsonBody(HttpServletRequest request) throws IOException {
+		if (request instanceof ContentCachingRequestWrapper wrapper) {
+			byte[] buf = wrapper.getContentAsByteArray();
+			if (buf.length == 0) {
+				return null;
+			}
+			Charset charset = Charset.forName(wrapper.getCharacterEncoding());
+			return StandardCharsets.UTF_8.equals(charset) ? OBJECT_MAPPER.readValue(buf, Map.class)
+					: OBJECT_MAPPER.readValue(new String(buf, charset), Map.class);
+		}
+		// 兼容未包装的情况
+		StringBuilder sb = new StringBuilder();
+		BufferedReader reader = request.getReader();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			sb.append(line);
+		}
+		return sb.isEmpty() ? null : OBJECT_MAPPER.readValue(sb.toString(), Map.class);
+	}
+
+	/**
+	 * 参数已按名称排序，跳过空值直接拼接
+	 */
+	private static String buildSignContent(Map<String, String> params) {
+		StringBuilder content = new StringBuilder(params.size() * 24);
+		params.forEach((key, value) -> {
+			if (value != null && !value.isEmpty()) {
+				if (!content.isEmpty()) {
+					content.append('&');
+				}
+				content.append(key).append('=').append(value);
+			}
+		});
+		return content.toString();
+	}
+}
@@ -0,0 +1,99 @@
+package api.idempotent.assign;
+
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.exception.IdempotentException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 验签公钥注册表
+ * <p>按请求头中的密钥ID选择公钥，支持同时启用多把公钥以便无停机轮换：
+ * 先在配置 {@code idempotent.public-keys} 或通过 {@link #register} 加入新公钥，客户端切换密钥ID后再移除旧公钥。
+ * 未携带密钥ID的请求使用 {@code idempotent.public-key}。</p>
+ * <p>公钥解析结果按Base64原文缓存，配置刷新后新的公钥在首次使用时解析一次；
+ * 运行时移除或替换的公钥不再被任何密钥ID引用时从缓存中淘汰。</p>
+ */
+@Slf4j
+@Component
+public class RsaKeyRegistry {
+
+	private final IdempotentProperties idempotentProperties;
+	/** 运行时注册的公钥，优先于配置 */
+	private final Map<String, String> registered = new ConcurrentHashMap<>();
+
+	public RsaKeyRegistry(IdempotentProperties idempotentProperties) {
+		this.idempotentProperties = idempotentProperties;
+	}
+
+	/**
+	 * 运行时注册（或替换）一把公钥
+	 */
+	public void register(String keyId, String base64PublicKey) {
+		try {
+			RsaUtil.getPublicKey(base64PublicKey);
+		} catch (Exception e) {
+			throw new IdempotentException("公钥格式错误: " + keyId, e);
+		}
+		String previous = registered.put(keyId, base64PublicKey);
+		if (previous != null && !previous.equals(base64PublicKey)) {
+			evictIfUnused(previous);
+		}
+		log.info("注册验签公钥: {}", keyId);
+	}
+
+	/**
+	 * 运行时移除一把公钥
+	 */
+	public void remove(String keyId) {
+		String removed = registered.remove(keyId);
+		if (removed != null) {
+			evictIfUnused(removed);
+			log.info("移除验签公钥: {}", keyId);
+		}
+	}
+
+	/**
+	 * 公钥仍被其他密钥ID或配置引用时保留缓存
+	 */
+	private void evictIfUnused(String base64PublicKey) {
+		if (registered.containsValue(base64PublicKey)
+				|| base64PublicKey.equals(idempotentProperties.getPublicKey())) {
+			return;
+		}
+		Map<String, String> configured = idempotentProperties.getPublicKeys();
+		if (configured != null && configured.containsValue(base64PublicKey)) {
+			return;
+		}
+		RsaUtil.evictPublicKey(base64PublicKey);
+	}
+
+	/**
+	 * 按密钥ID取得公钥
+	 *
+	 * @param keyId 请求头中的密钥ID，为空时使用默认公钥
+	 */
+	public PublicKey resolve(String keyId) throws Exception {
+		String base64PublicKey;
+		if (StringUtils.hasText(keyId)) {
+			base64PublicKey = registered.get(keyId);
+			if (base64PublicKey == null) {
+				Map<String, String> configured = idempotentProperties.getPublicKeys();
+				base64PublicKey = configured != null ? configured.get(keyId) : null;
+			}
+			if (base64PublicKey == null) {
+				throw new IdempotentException("签名校验失败：未知的密钥ID " + keyId);
+			}
+		} else {
+			base64PublicKey = idempotentProperties.getPublicKey();
+			if (!StringUtils.hasText(base64PublicKey)) {
+				throw new IdempotentException("签名校验失败：未配置公钥");
+			}
+		}
+		return RsaUtil.getPublicKey(base64PublicKey);
+	}
+}
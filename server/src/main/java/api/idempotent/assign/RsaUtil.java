@@ -2,14 +2,31 @@ package api.idempotent.assign;
 
 import java.nio.charset.StandardCharsets;
 import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class RsaUtil {
+
+	private static final String SIGN_ALGORITHM = "SHA256withRSA";
+
+	/**
+	 * 空闲的Signature实例，验签时借出、用完归还，避免每次验签都走Provider查找；
+	 * 不与线程绑定，虚拟线程同样复用。池空时新建，池满时丢弃，池大小即最多保留的实例数
+	 */
+	private static final BlockingQueue<Signature> VERIFIERS =
+			new ArrayBlockingQueue<>(Math.max(16, Runtime.getRuntime().availableProcessors() * 2));
+
+	/** 已解析的公钥，按Base64原文缓存；公钥移除或替换时由 {@link RsaKeyRegistry} 淘汰 */
+	private static final Map<String, PublicKey> PUBLIC_KEYS = new ConcurrentHashMap<>();
+
 	/**
 	 * 验签
 	 * @param data 待验签字符串
@@ -18,15 +35,24 @@ public class RsaUtil {
 	 * @return 是否验签通过
 	 */
 	public static boolean verify(String data, String sign, PublicKey publicKey) {
+		Signature signature = VERIFIERS.poll();
 		try {
-			Signature signature = Signature.getInstance("SHA256withRSA");
+			if (signature == null) {
+				signature = Signature.getInstance(SIGN_ALGORITHM);
+			}
 			signature.initVerify(publicKey);
 			signature.update(data.getBytes(StandardCharsets.UTF_8));
 
 			return signature.verify(Base64.getDecoder().decode(sign));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(SIGN_ALGORITHM + " algorithm not available", e);
 		} catch (Exception e) {
 			e.printStackTrace();
 			return false;
+		} finally {
+			if (signature != null) {
+				VERIFIERS.offer(signature);
+			}
 		}
 	}
 
@@ -39,7 +65,27 @@ public class RsaUtil {
 				.collect(Collectors.joining("&"));
 	}
 
+	/**
+	 * 解析公钥，同一个Base64公钥只解析一次
+	 */
 	public static PublicKey getPublicKey(String base64PublicKey) throws Exception {
+		PublicKey cached = PUBLIC_KEYS.get(base64PublicKey);
+		if (cached != null) {
+			return cached;
+		}
+		PublicKey publicKey = parsePublicKey(base64PublicKey);
+		PUBLIC_KEYS.putIfAbsent(base64PublicKey, publicKey);
+		return publicKey;
+	}
+
+	/**
+	 * 淘汰已缓存的公钥，公钥不再使用时调用
+	 */
+	public static void evictPublicKey(String base64PublicKey) {
+		PUBLIC_KEYS.remove(base64PublicKey);
+	}
+
+	private static PublicKey parsePublicKey(String base64PublicKey) throws Exception {
 		byte[] keyBytes = Base64.getDecoder().decode(base64PublicKey);
 		X509EncodedKeySpec spec = new X509EncodedKeySpec(keyBytes);
 		KeyFactory kf = KeyFactory.getInstance("RSA");
@@ -1,11 +1,15 @@
 package api.idempotent.spring;
 
 
+import api.idempotent.ClientIpResolver;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 幂等性配置属性
@@ -15,13 +19,172 @@ import java.util.List;
 @ConfigurationProperties(prefix = "idempotent")
 public class IdempotentProperties {
 
-	/** 扫描包 */
+	/** 扫描包（已废弃：幂等方法改为在bean创建时收集，该配置不再生效） */
+	@Deprecated
 	private List<String> scanPackages;
 	/** 密钥 */
 	private String publicKey;
+	/** 按密钥ID配置的多把公钥，用于密钥轮换 */
+	private Map<String, String> publicKeys = new HashMap<>();
+	/** 携带密钥ID的请求头名称 */
+	private String keyIdHeader = "X-Key-Id";
 	/**
 	 * 默认令牌请求头名称
 	 */
 	private String tokenHeader = "token";
+	/**
+	 * 是否只允许在HTTP请求中使用@Idempotent；默认false，消息监听、定时任务等没有请求的调用
+	 * 只由参数（或SpEL）与 IdempotentContextProvider 生成key
+	 */
+	private boolean requireRequest = false;
+	/**
+	 * 幂等key存储类型，默认redis
+	 */
+	private StoreType store = StoreType.REDIS;
+	/**
+	 * 内存存储配置（store=memory时生效）
+	 */
+	private Memory memory = new Memory();
+	/**
+	 * replayResult缓存的结果最大字节数，超出时不缓存，重复请求按原方式拒绝
+	 */
+	private int resultMaxBytes = 64 * 1024;
+	/**
+	 * 本地近端缓存配置
+	 */
+	private LocalCache localCache = new LocalCache();
+	/**
+	 * 无过期时间key巡检配置
+	 */
+	private Monitor monitor = new Monitor();
+	/**
+	 * 延迟删除队列配置
+	 */
+	private DelayDelete delayDelete = new DelayDelete();
+	/**
+	 * 客户端ip解析配置
+	 */
+	private ClientIp clientIp = new ClientIp();
+	/**
+	 * redis集群配置
+	 */
+	private Cluster cluster = new Cluster();
+	/**
+	 * 概率模式（type = PROBABILISTIC）的布隆过滤器配置
+	 */
+	private Bloom bloom = new Bloom();
+	/**
+	 * 租约模式（lease = true）的续期配置
+	 */
+	private Lease lease = new Lease();
+
+	public enum StoreType {
+		/** redis存储，多实例共享 */
+		REDIS,
+		/** 进程内存储，仅单实例有效 */
+		MEMORY
+	}
+
+	@Data
+	public static class Lease {
+		/** 占用时的初始有效期以及每次续期后的有效期（毫秒） */
+		private long leaseMillis = 10000;
+		/** 续期间隔（毫秒），不大于0时取 leaseMillis / 3 */
+		private long renewIntervalMillis = 0;
+	}
+
+	@Data
+	public static class Bloom {
+		/** 每个方法单个时间桶内预计的请求数，超出后误判率上升 */
+		private long expectedInsertions = 1000000;
+		/**
+		 * 目标误判率，即新请求被误判为重复而拒绝的概率；
+		 * 每百万请求每个桶约占用 -ln(fpp/buckets)/ln²2 位，默认值下约1.5MB
+		 */
+		private double fpp = 0.01;
+		/** 有效期划分的时间桶数（至少2），key实际保留 expireTime 到 expireTime*buckets/(buckets-1) */
+		private int buckets = 4;
+		/** 是否通过redis位图在多个节点之间合并过滤器 */
+		private boolean redisSync = false;
+		/** 与redis合并的间隔（毫秒），即节点之间的判重延迟；每次同步每个方法最多传输约4个桶大小 */
+		private long syncMillis = 5000;
+	}
+
+	@Data
+	public static class Cluster {
+		/**
+		 * 是否按redis集群布局key：幂等key带上分片hash tag（idempotent:{n}:...），
+		 * 延迟删除队列拆分为同样带tag的多个ZSET，每个分片与其中的key位于同一slot
+		 */
+		private boolean enabled = false;
+		/** 分片数，应明显大于master节点数，使各分片均匀落在不同节点上 */
+		private int shards = 16;
+	}
+
+	@Data
+	public static class ClientIp {
+		/**
+		 * 可信代理地址（CIDR或单个ip，如 10.0.0.0/8、::1）
+		 * <p>为空时沿用原有行为：信任所有来源的转发头，取其中第一个ip；
+		 * 配置后只有直连地址为可信代理时才读取转发头，并从右向左跳过可信代理取第一个ip</p>
+		 */
+		private List<String> trustedProxies = new ArrayList<>();
+		/** 依次读取的转发头 */
+		private List<String> headers = new ArrayList<>(ClientIpResolver.DEFAULT_HEADERS);
+	}
+
+	@Data
+	public static class Memory {
+		/** 过期时间轮tick时长（毫秒） */
+		private long tickMillis = 100;
+		/** 时间轮槽位数 */
+		private int wheelSize = 512;
+		/** 时间轮最多挂起的过期任务数，超出后依赖占用时的过期判断和sweep清理 */
+		private int maxPending = 1000000;
+	}
+
+	@Data
+	public static class LocalCache {
+		/** 是否开启本地缓存，开启后本节点刚获取过的key直接在本地拒绝，不再访问redis */
+		private boolean enabled = false;
+		/** 最大缓存条目数，超出后按容量淘汰 */
+		private long maximumSize = 10000;
+	}
+
+	@Data
+	public static class Monitor {
+		/** 巡检cron，默认每小时一次 */
+		private String cron = "0 0 * * * ?";
+		/** 每批SCAN的COUNT提示值 */
+		private int scanCount = 1000;
+		/** 批次之间的停顿（毫秒），避免持续占用redis */
+		private long pauseMillis = 20;
+		/** 单次巡检最长耗时（毫秒），超时后保存游标，下次从断点继续 */
+		private long maxSweepMillis = 5 * 60 * 1000;
+	}
+
+	@Data
+	public static class DelayDelete {
+		/** 队列有积压时的最短扫描间隔（毫秒） */
+		private long minIntervalMillis = 100;
+		/** 队列空闲时逐步退避到的最长扫描间隔（毫秒） */
+		private long maxIntervalMillis = 2000;
+		/** 单批最少处理条数 */
+		private int minBatchSize = 50;
+		/** 单批最多处理条数 */
+		private int maxBatchSize = 1000;
+		/** 是否启用本地时间轮调度，关闭时所有任务直接写入redis延迟队列 */
+		private boolean timingWheelEnabled = false;
+		/** 时间轮tick时长（毫秒），即删除的调度精度 */
+		private long tickMillis = 10;
+		/** 时间轮槽位数 */
+		private int wheelSize = 512;
+		/** 本地最多挂起的任务数，超出部分写入redis延迟队列 */
+		private int maxPending = 100000;
+		/** 集群模式下并行扫描各分片队列的线程数 */
+		private int drainThreads = 4;
+		/** 集群模式下应用节点的心跳间隔（毫秒），分片按存活节点分配，超过3个间隔未心跳的节点的分片由其他节点接管 */
+		private long nodeHeartbeatMillis = 5000;
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+package api.idempotent.spring.aspect;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.slf4j.MDC;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * 业务方法换到虚拟线程上调用时随之传递的线程上下文
+ * <p>返回 CompletableFuture 的方法在占用未能立即完成时，业务方法在切面的虚拟线程上调用，而不是调用线程。
+ * 调用线程上捕获以下上下文，调用业务方法前在虚拟线程上恢复，调用结束后还原：</p>
+ * <ul>
+ *     <li>当前的MethodInvocation（{@link ExposeInvocationInterceptor}），同一调用链中后续的AspectJ通知依赖它获取连接点</li>
+ *     <li>RequestAttributes、LocaleContext、slf4j MDC</li>
+ *     <li>spring-security的SecurityContext（存在时）</li>
+ * </ul>
+ * <p>事务同步等绑定在线程上的资源无法转移，需要加入调用方事务的方法不应返回 CompletableFuture。</p>
+ */
+@Slf4j
+final class AsyncInvocationContext {
+
+	private static final SecurityContextAccess SECURITY = SecurityContextAccess.find();
+
+	private final MethodInvocation invocation;
+	private final RequestAttributes requestAttributes;
+	private final LocaleContext localeContext;
+	private final Map<String, String> mdc;
+	private final Object securityContext;
+
+	private AsyncInvocationContext(MethodInvocation invocation, RequestAttributes requestAttributes,
+								   LocaleContext localeContext, Map<String, String> mdc, Object securityContext) {
+		this.invocation = invocation;
+		this.requestAttributes = requestAttributes;
+		this.localeContext = localeContext;
+		this.mdc = mdc;
+		this.securityContext = securityContext;
+	}
+
+	/**
+	 * 在调用线程上捕获
+	 */
+	static AsyncInvocationContext capture() {
+		MethodInvocation invocation;
+		try {
+			invocation = ExposeInvocationInterceptor.currentInvocation();
+		} catch (IllegalStateException e) {
+			// 未经过ExposeInvocationInterceptor（如直接编织），没有需要传递的调用
+			invocation = null;
+		}
+		return new AsyncInvocationContext(invocation, RequestContextHolder.getRequestAttributes(),
+				LocaleContextHolder.getLocaleContext(), MDC.getCopyOfContextMap(),
+				SECURITY != null ? SECURITY.get() : null);
+	}
+
+	/**
+	 * 恢复捕获的上下文并调用业务方法，结束后还原当前线程原有的上下文
+	 */
+	Object proceed(ProceedingJoinPoint joinPoint) throws Throwable {
+		RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+		LocaleContext previousLocale = LocaleContextHolder.getLocaleContext();
+		Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+		Object previousSecurity = SECURITY != null ? SECURITY.get() : null;
+		apply(requestAttributes, localeContext, mdc, securityContext);
+		try {
+			if (invocation instanceof ProxyMethodInvocation proxyInvocation) {
+				return ExposeInvocationInterceptor.INSTANCE.invoke(new ExposedInvocation(proxyInvocation, joinPoint));
+			}
+			return joinPoint.proceed();
+		} finally {
+			apply(previousAttributes, previousLocale, previousMdc, previousSecurity);
+		}
+	}
+
+	private static void apply(RequestAttributes attributes, LocaleContext locale, Map<String, String> mdc,
+							  Object securityContext) {
+		RequestContextHolder.setRequestAttributes(attributes);
+		LocaleContextHolder.setLocaleContext(locale);
+		if (mdc != null) {
+			MDC.setContextMap(mdc);
+		} else {
+			MDC.clear();
+		}
+		if (SECURITY != null) {
+			SECURITY.set(securityContext);
+		}
+	}
+
+	/**
+	 * 暴露给后续通知的调用：除proceed外全部委托给原调用，proceed继续切面自身的连接点
+	 */
+	private record ExposedInvocation(ProxyMethodInvocation delegate, ProceedingJoinPoint joinPoint)
+			implements ProxyMethodInvocation {
+
+		@Override
+		public Object proceed() throws Throwable {
+			return joinPoint.proceed();
+		}
+
+		@Override
+		public Object getProxy() {
+			return delegate.getProxy();
+		}
+
+		@Override
+		public MethodInvocation invocableClone() {
+			return delegate.invocableClone();
+		}
+
+		@Override
+		public MethodInvocation invocableClone(Object... arguments) {
+			return delegate.invocableClone(arguments);
+		}
+
+		@Override
+		public void setArguments(Object... arguments) {
+			delegate.setArguments(arguments);
+		}
+
+		@Override
+		public void setUserAttribute(String key, Object value) {
+			delegate.setUserAttribute(key, value);
+		}
+
+		@Override
+		public Object getUserAttribute(String key) {
+			return delegate.getUserAttribute(key);
+		}
+
+		@Override
+		public Method getMethod() {
+			return delegate.getMethod();
+		}
+
+		@Override
+		public Object[] getArguments() {
+			return delegate.getArguments();
+		}
+
+		@Override
+		public Object getThis() {
+			return delegate.getThis();
+		}
+
+		@Override
+		public AccessibleObject getStaticPart() {
+			return delegate.getStaticPart();
+		}
+	}
+
+	/**
+	 * spring-security为可选依赖，存在时通过方法句柄访问SecurityContextHolder
+	 */
+	private record SecurityContextAccess(MethodHandle getContext, MethodHandle setContext, MethodHandle clearContext) {
+
+		static SecurityContextAccess find() {
+			try {
+				Class<?> holder = Class.forName("org.springframework.security.core.context.SecurityContextHolder");
+				Class<?> context = Class.forName("org.springframework.security.core.context.SecurityContext");
+				MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				return new SecurityContextAccess(
+						lookup.findStatic(holder, "getContext", MethodType.methodType(context)),
+						lookup.findStatic(holder, "setContext", MethodType.methodType(void.class, context)),
+						lookup.findStatic(holder, "clearContext", MethodType.methodType(void.class)));
+			} catch (ClassNotFoundException e) {
+				return null;
+			} catch (ReflectiveOperationException e) {
+				log.warn("SecurityContextHolder不可访问，异步调用不传递SecurityContext", e);
+				return null;
+			}
+		}
+
+		Object get() {
+			try {
+				return getContext.invoke();
+			} catch (Throwable e) {
+				throw new IllegalStateException("读取SecurityContext失败", e);
+			}
+		}
+
+		void set(Object securityContext) {
+			try {
+				if (securityContext != null) {
+					setContext.invoke(securityContext);
+				} else {
+					clearContext.invoke();
+				}
+			} catch (Throwable e) {
+				throw new IllegalStateException("设置SecurityContext失败", e);
+			}
+		}
+	}
+}
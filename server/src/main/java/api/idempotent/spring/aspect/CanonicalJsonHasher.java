@@ -0,0 +1,318 @@
+package api.idempotent.spring.aspect;
+
+import api.idempotent.RequestUtils;
+import api.idempotent.spring.exception.IdempotentException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 请求体规范化摘要
+ * <p>基于Jackson流式 {@link JsonParser} 逐个token计算请求体的规范化SHA-256摘要，不构建Map或树：</p>
+ * <ul>
+ *     <li>标量：类型标记 + 原始文本</li>
+ *     <li>数组：按元素顺序对元素摘要再做摘要</li>
+ *     <li>对象：每个成员计算 摘要(字段名 + 值摘要)，成员摘要按256位整数求和后再做摘要，与字段顺序无关；值为null的成员跳过</li>
+ * </ul>
+ * <p>每层嵌套复用一个 {@link MessageDigest} 和固定大小的缓冲区（按线程缓存），耗时与请求体大小成线性关系。</p>
+ */
+public final class CanonicalJsonHasher {
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final ThreadLocal<State> LOCAL = ThreadLocal.withInitial(State::new);
+
+	private static final byte TAG_STRING = 's';
+	private static final byte TAG_NUMBER = 'n';
+	private static final byte TAG_TRUE = 't';
+	private static final byte TAG_FALSE = 'f';
+	private static final byte TAG_NULL = 'z';
+	private static final byte TAG_ARRAY = '[';
+	private static final byte TAG_OBJECT = '{';
+	private static final byte TAG_MEMBER = 'k';
+
+	private CanonicalJsonHasher() {
+	}
+
+	/**
+	 * 将当前请求体（JSON或表单）的规范化摘要写入key摘要
+	 *
+	 * @return 请求体为空时返回false，不写入任何内容
+	 */
+	public static boolean digestRequestBody(HttpServletRequest request, IdempotentKeyDigest keyDigest) {
+		String contentType = request.getContentType();
+		if (contentType == null) {
+			return false;
+		}
+		if (contentType.contains("application/json")) {
+			try (JsonParser parser = JSON_FACTORY.createParser(request.getReader())) {
+				return digestJson(parser, keyDigest);
+			} catch (IOException e) {
+				throw new IdempotentException("请求体解析失败", e);
+			}
+		}
+		if (contentType.contains("application/x-www-form-urlencoded")) {
+			return digestForm(RequestUtils.getRequestBody(request), keyDigest);
+		}
+		return false;
+	}
+
+	/**
+	 * 计算一个JSON文档的规范化摘要并写入key摘要
+	 *
+	 * @return 文档为空、空对象或空数组时返回false
+	 */
+	public static boolean digestJson(JsonParser parser, IdempotentKeyDigest keyDigest) throws IOException {
+		JsonToken token = parser.nextToken();
+		if (token == null) {
+			return false;
+		}
+		State state = LOCAL.get();
+		int entries = state.digestValue(parser, token, 0);
+		if (entries == 0 && (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)) {
+			return false;
+		}
+		keyDigest.update(state.out(0));
+		return true;
+	}
+
+	/**
+	 * 计算表单参数的规范化摘要（与JSON对象规则相同，值按字符串处理）并写入key摘要
+	 */
+	public static boolean digestForm(Map<String, ?> form, IdempotentKeyDigest keyDigest) {
+		if (form == null || form.isEmpty()) {
+			return false;
+		}
+		State state = LOCAL.get();
+		if (state.digestForm(form) == 0) {
+			return false;
+		}
+		keyDigest.update(state.out(0));
+		return true;
+	}
+
+	/**
+	 * 线程内复用的计算状态，按嵌套深度分配摘要器和缓冲区
+	 */
+	private static final class State {
+		private static final int HASH_LENGTH = 32;
+
+		private MessageDigest[] digests = new MessageDigest[0];
+		private byte[][] outs = new byte[0][];
+		private byte[][] sums = new byte[0][];
+		private byte[][] members = new byte[0][];
+		private final byte[] utf8 = new byte[512];
+
+		byte[] out(int depth) {
+			return outs[depth];
+		}
+
+		/**
+		 * 计算当前值的摘要，结果写入 outs[depth]
+		 *
+		 * @return 对象的非null成员数或数组元素数，标量返回1
+		 */
+		int digestValue(JsonParser parser, JsonToken token, int depth) throws IOException {
+			ensureDepth(depth);
+			MessageDigest digest = digests[depth];
+			switch (token) {
+				case START_OBJECT:
+					return digestObject(parser, depth);
+				case START_ARRAY:
+					digest.reset();
+					digest.update(TAG_ARRAY);
+					int elements = 0;
+					JsonToken element;
+					while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+						digestValue(parser, element, depth + 1);
+						digest.update(outs[depth + 1]);
+						elements++;
+					}
+					finish(digest, outs[depth]);
+					return elements;
+				case VALUE_STRING:
+					digestText(parser, digest, TAG_STRING, outs[depth]);
+					return 1;
+				case VALUE_NUMBER_INT:
+				case VALUE_NUMBER_FLOAT:
+					digestText(parser, digest, TAG_NUMBER, outs[depth]);
+					return 1;
+				case VALUE_TRUE:
+					digestTag(digest, TAG_TRUE, outs[depth]);
+					return 1;
+				case VALUE_FALSE:
+					digestTag(digest, TAG_FALSE, outs[depth]);
+					return 1;
+				case VALUE_NULL:
+					digestTag(digest, TAG_NULL, outs[depth]);
+					return 1;
+				default:
+					throw new IOException("不支持的JSON token: " + token);
+			}
+		}
+
+		private int digestObject(JsonParser parser, int depth) throws IOException {
+			MessageDigest digest = digests[depth];
+			byte[] sum = sums[depth];
+			Arrays.fill(sum, (byte) 0);
+			int members = 0;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.currentName();
+				JsonToken value = parser.nextToken();
+				if (value == JsonToken.VALUE_NULL) {
+					continue;
+				}
+				digestValue(parser, value, depth + 1);
+				digest.reset();
+				digest.update(TAG_MEMBER);
+				updateUtf8(digest, name);
+				digest.update((byte) 0);
+				digest.update(outs[depth + 1]);
+				finish(digest, this.members[depth]);
+				add(sum, this.members[depth]);
+				members++;
+			}
+			digest.reset();
+			digest.update(TAG_OBJECT);
+			digest.update(sum);
+			finish(digest, outs[depth]);
+			return members;
+		}
+
+		int digestForm(Map<String, ?> form) {
+			ensureDepth(1);
+			MessageDigest digest = digests[0];
+			MessageDigest valueDigest = digests[1];
+			byte[] sum = sums[0];
+			Arrays.fill(sum, (byte) 0);
+			int members = 0;
+			for (Map.Entry<String, ?> entry : form.entrySet()) {
+				if (entry.getValue() == null) {
+					continue;
+				}
+				valueDigest.reset();
+				valueDigest.update(TAG_STRING);
+				updateUtf8(valueDigest, entry.getValue().toString());
+				finish(valueDigest, outs[1]);
+				digest.reset();
+				digest.update(TAG_MEMBER);
+				updateUtf8(digest, entry.getKey());
+				digest.update((byte) 0);
+				digest.update(outs[1]);
+				finish(digest, this.members[0]);
+				add(sum, this.members[0]);
+				members++;
+			}
+			digest.reset();
+			digest.update(TAG_OBJECT);
+			digest.update(sum);
+			finish(digest, outs[0]);
+			return members;
+		}
+
+		private void digestText(JsonParser parser, MessageDigest digest, byte tag, byte[] out) throws IOException {
+			digest.reset();
+			digest.update(tag);
+			updateUtf8(digest, parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+			finish(digest, out);
+		}
+
+		private void digestTag(MessageDigest digest, byte tag, byte[] out) {
+			digest.reset();
+			digest.update(tag);
+			finish(digest, out);
+		}
+
+		private void updateUtf8(MessageDigest digest, String value) {
+			int length = value.length();
+			int position = 0;
+			for (int i = 0; i < length; i++) {
+				position = encode(digest, value.charAt(i), position);
+			}
+			digest.update(utf8, 0, position);
+		}
+
+		private void updateUtf8(MessageDigest digest, char[] chars, int offset, int length) {
+			int position = 0;
+			for (int i = offset, end = offset + length; i < end; i++) {
+				position = encode(digest, chars[i], position);
+			}
+			digest.update(utf8, 0, position);
+		}
+
+		/**
+		 * 逐个UTF-16单元编码；规范化摘要只要求同一输入得到同一字节序列，代理对按各自的三字节形式写入即可
+		 */
+		private int encode(MessageDigest digest, char c, int position) {
+			if (position > utf8.length - 3) {
+				digest.update(utf8, 0, position);
+				position = 0;
+			}
+			if (c < 0x80) {
+				utf8[position++] = (byte) c;
+			} else if (c < 0x800) {
+				utf8[position++] = (byte) (0xC0 | (c >> 6));
+				utf8[position++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				utf8[position++] = (byte) (0xE0 | (c >> 12));
+				utf8[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				utf8[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+			return position;
+		}
+
+		private void ensureDepth(int depth) {
+			if (depth < digests.length) {
+				return;
+			}
+			int size = Math.max(depth + 1, digests.length * 2);
+			int from = digests.length;
+			digests = Arrays.copyOf(digests, size);
+			outs = Arrays.copyOf(outs, size);
+			sums = Arrays.copyOf(sums, size);
+			members = Arrays.copyOf(members, size);
+			for (int i = from; i < size; i++) {
+				digests[i] = newDigest();
+				outs[i] = new byte[HASH_LENGTH];
+				sums[i] = new byte[HASH_LENGTH];
+				members[i] = new byte[HASH_LENGTH];
+			}
+		}
+
+		private static void finish(MessageDigest digest, byte[] out) {
+			try {
+				digest.digest(out, 0, HASH_LENGTH);
+			} catch (DigestException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * sum += value（按256位大端整数相加，溢出截断），与成员顺序无关
+		 */
+		private static void add(byte[] sum, byte[] value) {
+			int carry = 0;
+			for (int i = HASH_LENGTH - 1; i >= 0; i--) {
+				int total = (sum[i] & 0xFF) + (value[i] & 0xFF) + carry;
+				sum[i] = (byte) total;
+				carry = total >>> 8;
+			}
+		}
+
+		private static MessageDigest newDigest() {
+			try {
+				return MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				// SHA-256是标准算法，理论上不会发生
+				throw new IllegalStateException("SHA-256 algorithm not available", e);
+			}
+		}
+	}
+}
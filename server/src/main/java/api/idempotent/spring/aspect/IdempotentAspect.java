@@ -1,17 +1,23 @@
 package api.idempotent.spring.aspect;
 
+import api.idempotent.ClientIpResolver;
 import api.idempotent.RequestUtils;
 
 import api.idempotent.annotation.Idempotent;
-import api.idempotent.assign.RsaUtil;
+import api.idempotent.assign.RequestSignVerifier;
 import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.bloom.IdempotentBloomFilters;
 
+import api.idempotent.spring.cache.IdempotentLocalCache;
+import api.idempotent.spring.context.IdempotentContextResolver;
 import api.idempotent.spring.cache.IdempotentMethodCache;
 import api.idempotent.spring.cache.IdempotentMethodMeta;
 import api.idempotent.spring.exception.IdempotentException;
-import api.idempotent.spring.monitor.RedisDelayedDeleteService;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import api.idempotent.spring.metrics.IdempotentMetrics;
+import api.idempotent.spring.store.IdempotentKeyLayout;
+import api.idempotent.spring.store.IdempotentResultCodec;
+import api.idempotent.spring.store.IdempotentState;
+import api.idempotent.spring.store.IdempotentStore;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -20,31 +26,19 @@ import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.expression.MethodBasedEvaluationContext;
-import org.springframework.core.DefaultParameterNameDiscoverer;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.expression.Expression;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.stereotype.Component;
-import org.springframework.util.ObjectUtils;
-import org.springframework.util.StringUtils;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
-import org.springframework.web.util.ContentCachingRequestWrapper;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.PublicKey;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 
 /**
@@ -58,267 +52,471 @@ import java.util.stream.Collectors;
 public class IdempotentAspect {
 
 	private static final Logger log = LoggerFactory.getLogger(IdempotentAspect.class);
-	private static final String KEY_PREFIX = "idempotent:";
-	private final SpelExpressionParser parser = new SpelExpressionParser();
-	private final DefaultParameterNameDiscoverer nameDiscoverer = new DefaultParameterNameDiscoverer();
+	/** 异步占用完成后调用业务方法的线程 */
+	private static final Executor ASYNC_EXECUTOR = Executors.newThreadPerTaskExecutor(
+			Thread.ofVirtual().name("idempotent-async-", 0).factory());
 	@Resource
 	private IdempotentMethodCache methodCache;
 	@Resource
-	private RedisTemplate redisTemplate;
+	private IdempotentStore idempotentStore;
+	@Resource
+	private IdempotentKeyLayout keyLayout;
 
 	@Resource
 	private IdempotentProperties idempotentProperties;
 
 	@Resource
-	private RedisDelayedDeleteService redisDelayedDeleteService;
+	private IdempotentLocalCache localCache;
+
+	@Resource
+	private IdempotentResultCodec resultCodec;
+
+	@Resource
+	private IdempotentSingleFlight singleFlight;
+
+	@Resource
+	private RequestSignVerifier requestSignVerifier;
+
+	@Resource
+	private IdempotentMetrics idempotentMetrics;
+
+	@Resource
+	private ClientIpResolver clientIpResolver;
+
+	@Resource
+	private IdempotentBloomFilters bloomFilters;
+
+	@Resource
+	private IdempotentContextResolver contextResolver;
+
+	@Resource
+	private IdempotentLeaseWatchdog leaseWatchdog;
 
-	@Around("@annotation(idempotent)")
+	@Resource
+	private IdempotentCompletionNotifier completionNotifier;
+
+	/**
+	 * 返回 Mono/Flux 的方法由 {@link api.idempotent.spring.reactive.ReactiveIdempotentAspect} 处理
+	 */
+	@Around("@annotation(idempotent) && !execution(reactor.core.publisher.Mono+ *(..)) && !execution(reactor.core.publisher.Flux+ *(..))")
 	public Object around(ProceedingJoinPoint joinPoint, Idempotent idempotent) throws Throwable {
 		//判断是否需要验签
 		if(idempotent.enableSignVerify()){
-			verifySign();
+			long verifyStart = System.nanoTime();
+			boolean verified = false;
+			try {
+				requestSignVerifier.verify(RequestUtils.findCurrentRequest());
+				verified = true;
+			} finally {
+				idempotentMetrics.recordSignVerify(verifyStart, verified);
+			}
 		}
-		MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-		String className = signature.getDeclaringTypeName();
-		String methodName = signature.getName();
-		List<String> paramTypeNames = Arrays.stream(signature.getParameterTypes())
-				.map(Class::getName).collect(Collectors.toList());
-
-		IdempotentMethodMeta meta = methodCache.getMeta(className, methodName, paramTypeNames);
-		if (ObjectUtils.isEmpty(meta)) {
-			throw new IdempotentException("没找到对应类和方法的元数据 " + className + "#" + methodName);
+		// 以Method对象直接查找预先构建的执行计划，热路径上不做任何分配
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		IdempotentMethodMeta meta = methodCache.getMeta(method);
+		if (meta == null) {
+			throw new IdempotentException("没找到对应类和方法的元数据 " + method);
 		}
 		Idempotent cachedAnno = meta.getIdempotent();
+		IdempotentMetrics.MethodMeters meters = idempotentMetrics.method(meta);
 
 
 		// 生成Redis幂等键
+		long keyStart = System.nanoTime();
 		String redisKey = buildKey(joinPoint,meta);
-
-		// 尝试设置Redis键值（原子操作）
-		Boolean isAbsent = redisTemplate.opsForValue().setIfAbsent(
-				redisKey,
-				"1", //占位值
-				cachedAnno.expireTime(),
-				cachedAnno.timeUnit()
-		);
-		// 重复请求处理
-		if (Boolean.FALSE.equals(isAbsent)) {
-			log.warn("重复请求触发幂等拦截, key: {}", redisKey);
-			throw new IdempotentException(cachedAnno.info());
+		meters.recordKeyDerivation(keyStart);
+
+		// 本节点上同一key已有请求在执行时，直接等待其结果或拒绝，不再访问redis
+		CompletableFuture<Object> flight = new CompletableFuture<>();
+		CompletableFuture<Object> inFlight = singleFlight.join(redisKey, flight);
+		if (inFlight != null) {
+			meters.inFlight();
+			return meta.isAsyncResult()
+					? singleFlight.awaitAsync(redisKey, inFlight, cachedAnno)
+					: singleFlight.await(redisKey, inFlight, cachedAnno);
 		}
+		boolean leaveOnCompletion = false;
 		try {
-
-			Object result = joinPoint.proceed();
-
-
-			// 执行成功后不马上删除Key，让其自然过期 （如果配置）
-			if (idempotent.delKey()) {
-				//无论否成功，都加入延迟删除任务，防止数据丢失
-				redisDelayedDeleteService.addDelayDeleteTask(redisKey, cachedAnno.delayCheckSeconds());
-				log.debug("业务完成删除幂等键, key: {}", redisKey);
+			Object result = invoke(joinPoint, meta, meters, redisKey);
+			// 返回CompletableFuture的方法在future完成时才算结束，期间的重复请求继续合并到首个请求上
+			if (result instanceof CompletableFuture<?> future) {
+				leaveOnCompletion = true;
+				future.whenComplete((value, e) -> {
+					if (e == null) {
+						flight.complete(value);
+					} else {
+						flight.completeExceptionally(e);
+					}
+					singleFlight.leave(redisKey, flight);
+				});
+				return result;
 			}
+			flight.complete(result);
 			return result;
-		} catch (InvocationTargetException e) {
-//			log.error("目标方法异常: ", e.getTargetException());
-//			e.getTargetException().printStackTrace();
-			// 异常时立即删除Key（如果配置）
-			if (cachedAnno.delKey()) {
-				redisTemplate.delete(redisKey);
-				//无论否成功，都加入延迟删除任务，防止数据丢失
-				redisDelayedDeleteService.addDelayDeleteTask(redisKey, cachedAnno.delayCheckSeconds());
-				log.debug("业务异常删除幂等键, key: {}", redisKey);
+		} catch (Throwable e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			if (!leaveOnCompletion) {
+				singleFlight.leave(redisKey, flight);
 			}
-//			throw new IdempotentException(e);
-			throw e.getTargetException();
-
 		}
 	}
 
-	private String buildKey(ProceedingJoinPoint joinPoint, IdempotentMethodMeta meta){
-		String rawKeyContent;
-		//从缓存中拿，避免反射
-		Method method = meta.getMethod();
-		Idempotent idempotent = meta.getIdempotent();
-		HttpServletRequest currentRequest = RequestUtils.getCurrentRequest();
-		// 1. 使用自定义SPEL表达式
-		if (StringUtils.hasText(idempotent.key())) {
-			rawKeyContent = parseSpel(method, joinPoint.getArgs(), idempotent.key());
+	private Object invoke(ProceedingJoinPoint joinPoint, IdempotentMethodMeta meta, IdempotentMetrics.MethodMeters meters,
+						  String redisKey) throws Throwable {
+		if (meta.getIdempotent().type() == Idempotent.IdempotentType.PROBABILISTIC) {
+			return invokeProbabilistic(joinPoint, meta, meters, redisKey);
 		}
-		// 2. 自动生成默认Key：类名+方法名+参数哈希
-		else {
-			//同样的，从缓存里拿
-			String className = meta.getClassName();
-			String methodName = meta.getMethodName();
-			System.out.println();
-			int paramsHash = Arrays.toString(joinPoint.getArgs()).hashCode();
-			rawKeyContent = String.format("%s.%s:%d", className, methodName, paramsHash);
+		if (meta.isAsyncResult()) {
+			return invokeAsync(joinPoint, meta, meters, redisKey);
 		}
+		Idempotent cachedAnno = meta.getIdempotent();
 
-		// 获取请求体数据
-		Map<String, Object> requestBody = RequestUtils.getRequestBody(currentRequest);
-
-		// 标准化处理请求体并追加
-		if (!requestBody.isEmpty()) {
-			String normalizedRequestBody = normalizeRequestBody(requestBody);
-			rawKeyContent += normalizedRequestBody;
+		// 本节点刚获取过的key直接本地拒绝，无需访问redis
+		if (localCache.isDuplicate(redisKey)) {
+			meters.localDuplicate();
+			log.warn("重复请求触发幂等拦截(本地缓存), key: {}", redisKey);
+			return handleDuplicate(redisKey, meta);
 		}
 
+		// 尝试占用幂等键（原子操作）
+		long acquireStart = System.nanoTime();
+		boolean acquired = cachedAnno.lease()
+				? idempotentStore.acquireLease(redisKey, leaseWatchdog.getLeaseMillis())
+				: idempotentStore.acquire(redisKey, cachedAnno.expireTime(), cachedAnno.timeUnit());
+		meters.recordAcquire(acquireStart, acquired);
+		// 重复请求处理
+		if (!acquired) {
+			log.warn("重复请求触发幂等拦截, key: {}", redisKey);
+			return handleDuplicate(redisKey, meta);
+		}
+		localCache.put(redisKey, localTtlMillis(cachedAnno), TimeUnit.MILLISECONDS);
+		if (cachedAnno.lease()) {
+			leaseWatchdog.register(redisKey);
+		}
+		Object result;
+		try {
+			result = joinPoint.proceed();
+		} catch (Throwable e) {
+			// proceed直接抛出目标方法的原始异常，不会包装为InvocationTargetException
+			finishLease(redisKey, cachedAnno, false);
+			onFailure(redisKey, cachedAnno);
+			throw e;
+		}
+		finishLease(redisKey, cachedAnno, true);
+		onSuccess(redisKey, cachedAnno, result);
+		return result;
+	}
 
-		// 获取 当前请求 IP
-		String ipAddress = RequestUtils.getIpAddress(currentRequest);
-		//新增：端口
-		String port = String.valueOf(currentRequest.getRemotePort());
+	/**
+	 * 概率模式：只在布隆过滤器中判重，不占用存储；写入的key无法移除，业务异常时也不释放
+	 */
+	private Object invokeProbabilistic(ProceedingJoinPoint joinPoint, IdempotentMethodMeta meta,
+									   IdempotentMetrics.MethodMeters meters, String redisKey) throws Throwable {
+		long checkStart = System.nanoTime();
+		boolean fresh = bloomFilters.putIfAbsent(meta, redisKey);
+		meters.recordBloomCheck(checkStart, fresh);
+		if (!fresh) {
+			log.warn("重复请求触发幂等拦截(布隆过滤器), key: {}", redisKey);
+			IdempotentException e = new IdempotentException(meta.getIdempotent().info());
+			if (meta.isAsyncResult()) {
+				return CompletableFuture.failedFuture(e);
+			}
+			throw e;
+		}
+		return joinPoint.proceed();
+	}
 
+	/**
+	 * 返回 CompletableFuture/CompletionStage 的方法：异步占用key，key的释放与结果缓存在future完成时进行
+	 * <p>占用未能立即完成时，业务方法在虚拟线程上调用，不占用存储客户端的IO线程；调用线程的MethodInvocation、
+	 * 请求、Locale、MDC和SecurityContext随之传递，见 {@link AsyncInvocationContext}。占用已完成时仍在调用线程上调用。</p>
+	 */
+	private CompletableFuture<Object> invokeAsync(ProceedingJoinPoint joinPoint, IdempotentMethodMeta meta,
+												  IdempotentMetrics.MethodMeters meters, String redisKey) {
+		Idempotent cachedAnno = meta.getIdempotent();
+		if (localCache.isDuplicate(redisKey)) {
+			meters.localDuplicate();
+			log.warn("重复请求触发幂等拦截(本地缓存), key: {}", redisKey);
+			return handleDuplicateAsync(redisKey, meta);
+		}
 
+		long acquireStart = System.nanoTime();
+		CompletableFuture<Boolean> acquiring = (cachedAnno.lease()
+				? idempotentStore.acquireLeaseAsync(redisKey, leaseWatchdog.getLeaseMillis())
+				: idempotentStore.acquireAsync(redisKey, cachedAnno.expireTime(), cachedAnno.timeUnit())).toCompletableFuture();
+		// 占用已完成时直接在调用线程上继续，否则捕获调用线程的上下文带到虚拟线程
+		boolean inline = acquiring.isDone();
+		AsyncInvocationContext context = inline ? null : AsyncInvocationContext.capture();
+		Function<Boolean, CompletableFuture<Object>> proceed = acquired -> {
+			meters.recordAcquire(acquireStart, acquired);
+			if (!acquired) {
+				log.warn("重复请求触发幂等拦截, key: {}", redisKey);
+				return handleDuplicateAsync(redisKey, meta);
+			}
+			localCache.put(redisKey, localTtlMillis(cachedAnno), TimeUnit.MILLISECONDS);
+			if (cachedAnno.lease()) {
+				leaseWatchdog.register(redisKey);
+			}
+			return proceedAsync(joinPoint, context).whenComplete((result, e) -> {
+				finishLease(redisKey, cachedAnno, e == null);
+				if (e == null) {
+					onSuccess(redisKey, cachedAnno, result);
+				} else {
+					onFailureAsync(redisKey, cachedAnno);
+				}
+			});
+		};
+		return inline ? acquiring.thenCompose(proceed) : acquiring.thenComposeAsync(proceed, ASYNC_EXECUTOR);
+	}
 
-		String defTokenHeader = idempotent.tokenHeader();
-		if (!StringUtils.hasText(defTokenHeader) || defTokenHeader.isEmpty()) {
-			defTokenHeader = idempotentProperties.getTokenHeader();
+	/**
+	 * @param context 换到虚拟线程调用时的调用线程上下文，在调用线程上调用时为null
+	 */
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<Object> proceedAsync(ProceedingJoinPoint joinPoint, AsyncInvocationContext context) {
+		try {
+			Object result = context != null ? context.proceed(joinPoint) : joinPoint.proceed();
+			return result != null ? ((CompletionStage<Object>) result).toCompletableFuture()
+					: CompletableFuture.completedFuture(null);
+		} catch (Throwable e) {
+			return CompletableFuture.failedFuture(e);
 		}
+	}
 
-		String tokenValue = RequestUtils.getHeaderWithVariants(currentRequest, defTokenHeader);
+	/**
+	 * 租约模式：停止续期并把key的有效期设为expireTime；异常且开启delKey时随后会立即释放，不再设置
+	 * <p>completeLease与批量续期在存储中互斥，正在进行的续期不会覆盖最终有效期</p>
+	 */
+	private void finishLease(String redisKey, Idempotent cachedAnno, boolean success) {
+		if (!cachedAnno.lease()) {
+			return;
+		}
+		leaseWatchdog.complete(redisKey);
+		if (!success && cachedAnno.delKey()) {
+			return;
+		}
+		try {
+			if (!idempotentStore.completeLease(redisKey, cachedAnno.expireTime(), cachedAnno.timeUnit())) {
+				log.warn("幂等key租约已失效，无法设置最终有效期, key: {}", redisKey);
+			}
+		} catch (Exception e) {
+			log.warn("幂等key设置最终有效期失败, key: {}", redisKey, e);
+		}
+	}
 
+	private void onSuccess(String redisKey, Idempotent cachedAnno, Object result) {
+		boolean saved = cachedAnno.replayResult() && saveResult(redisKey, result);
+		// 分布式等待：记录成功状态并通知其他节点上等待的请求
+		if (cachedAnno.concurrentPolicy() == Idempotent.ConcurrentPolicy.DISTRIBUTED_WAIT) {
+			if (!saved) {
+				saveState(redisKey, resultCodec.succeeded());
+			}
+			completionNotifier.publish(redisKey);
+		}
 
-		// 生成32字节SHA-256哈希值
-		return KEY_PREFIX + tokenValue + ":" + ipAddress + ":" + port + ":" + generateSha256(rawKeyContent);
+		// 执行成功后不马上删除Key，让其自然过期 （如果配置）
+		if (cachedAnno.delKey()) {
+			//无论否成功，都加入延迟删除任务，防止数据丢失
+			idempotentStore.releaseLater(redisKey, cachedAnno.delayCheckSeconds());
+			log.debug("业务完成删除幂等键, key: {}", redisKey);
+		}
 	}
 
 	/**
-	 * 标准化请求体:
-	 * 1. 过滤空值项
-	 * 2. 按键名不区分大小写排序
-	 * 3. 使用标准JSON格式序列化
+	 * 异常时立即删除Key（如果配置）
 	 */
-	private String normalizeRequestBody(Map<String, Object> requestBody) {
-		// 创建有序Map（按字段名排序）
-		Map<String, Object> sortedMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private void onFailure(String redisKey, Idempotent cachedAnno) {
+		if (cachedAnno.delKey()) {
+			idempotentStore.release(redisKey);
+			localCache.invalidate(redisKey);
+			//无论否成功，都加入延迟删除任务，防止数据丢失
+			idempotentStore.releaseLater(redisKey, cachedAnno.delayCheckSeconds());
+			log.debug("业务异常删除幂等键, key: {}", redisKey);
+		}
+		notifyFailure(redisKey, cachedAnno);
+	}
 
-		// 过滤空值项并收集到有序Map中
-		requestBody.entrySet().stream()
-				.filter(entry -> entry.getValue() != null)
-				.forEach(entry -> sortedMap.put(entry.getKey(), entry.getValue()));
+	private void onFailureAsync(String redisKey, Idempotent cachedAnno) {
+		if (cachedAnno.delKey()) {
+			localCache.invalidate(redisKey);
+			idempotentStore.releaseAsync(redisKey).whenComplete((ignored, e) -> {
+				if (e != null) {
+					log.warn("幂等键释放失败, key: {}", redisKey, e);
+				}
+				// 释放完成后再通知，等待方读到的是已释放的状态
+				notifyFailure(redisKey, cachedAnno);
+			});
+			//无论否成功，都加入延迟删除任务，防止数据丢失
+			idempotentStore.releaseLater(redisKey, cachedAnno.delayCheckSeconds());
+			log.debug("业务异常删除幂等键, key: {}", redisKey);
+		} else {
+			notifyFailure(redisKey, cachedAnno);
+		}
+	}
 
-		// 使用JSON序列化（假设项目中有JSON处理能力）
+	/**
+	 * 分布式等待：未释放的key记录失败状态，并通知其他节点上等待的请求
+	 */
+	private void notifyFailure(String redisKey, Idempotent cachedAnno) {
+		if (cachedAnno.concurrentPolicy() != Idempotent.ConcurrentPolicy.DISTRIBUTED_WAIT) {
+			return;
+		}
+		if (!cachedAnno.delKey()) {
+			saveState(redisKey, resultCodec.failed());
+		}
+		completionNotifier.publish(redisKey);
+	}
+
+	private CompletableFuture<Object> handleDuplicateAsync(String redisKey, IdempotentMethodMeta meta) {
+		// 分布式等待在虚拟线程上挂起，不占用调用线程
+		if (meta.getIdempotent().concurrentPolicy() == Idempotent.ConcurrentPolicy.DISTRIBUTED_WAIT) {
+			return CompletableFuture.supplyAsync(() -> handleDuplicate(redisKey, meta), ASYNC_EXECUTOR);
+		}
 		try {
-			return new ObjectMapper().writeValueAsString(sortedMap);
-		} catch (JsonProcessingException e) {
-			log.warn("请求体序列化失败，将使用原始toString: {}", e.getMessage());
-			return sortedMap.toString();
+			return CompletableFuture.completedFuture(handleDuplicate(redisKey, meta));
+		} catch (IdempotentException e) {
+			return CompletableFuture.failedFuture(e);
 		}
 	}
 
 	/**
-	 * 生成32字节SHA-256哈希值（64字符十六进制字符串）
+	 * 重复请求：开启replayResult且首次执行已完成时直接返回缓存结果，否则拒绝
 	 */
-	private String generateSha256(String input) {
-		try {
-			MessageDigest digest = MessageDigest.getInstance("SHA-256");
-			byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-			return bytesToHex(hashBytes);
-		} catch (NoSuchAlgorithmException e) {
-			// SHA-256是标准算法，理论上不会发生
-			throw new RuntimeException("SHA-256 algorithm not available", e);
+	private Object handleDuplicate(String redisKey, IdempotentMethodMeta meta) {
+		Idempotent cachedAnno = meta.getIdempotent();
+		if (cachedAnno.concurrentPolicy() == Idempotent.ConcurrentPolicy.DISTRIBUTED_WAIT) {
+			return awaitCompletion(redisKey, meta);
 		}
+		return replayOrReject(redisKey, meta, cachedAnno.replayResult() ? idempotentStore.getResult(redisKey) : null);
 	}
 
 	/**
-	 * 字节数组转十六进制字符串
+	 * 分布式等待：首个请求仍在执行时等待其完成通知，完成后按其结果返回或拒绝
 	 */
-	private String bytesToHex(byte[] bytes) {
-		StringBuilder hexString = new StringBuilder();
-		for (byte b : bytes) {
-			String hex = Integer.toHexString(0xff & b);
-			if (hex.length() == 1) hexString.append('0');
-			hexString.append(hex);
-		}
-		return hexString.toString();
+	private Object awaitCompletion(String redisKey, IdempotentMethodMeta meta) {
+		Idempotent cachedAnno = meta.getIdempotent();
+		// 先登记再读状态，读取之后才完成的请求一定能通知到
+		CompletableFuture<Void> completion = completionNotifier.subscribe(redisKey);
+		try {
+			byte[] payload = idempotentStore.getResult(redisKey);
+			if (readState(redisKey, payload) == IdempotentState.PROCESSING) {
+				try {
+					completion.get(cachedAnno.concurrentWaitMillis(), TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IdempotentException(cachedAnno.info());
+				} catch (ExecutionException | TimeoutException e) {
+					// 通知可能丢失，超时后再读一次状态
+				}
+				payload = idempotentStore.getResult(redisKey);
+			}
+			IdempotentState state = readState(redisKey, payload);
+			if (state == IdempotentState.SUCCEEDED) {
+				return replayOrReject(redisKey, meta, payload);
+			}
+			log.warn("重复请求触发幂等拦截(分布式等待), 首个请求: {}, key: {}", state, redisKey);
+			throw new IdempotentException(cachedAnno.info());
+		} finally {
+			completionNotifier.unsubscribe(redisKey, completion);
+		}
 	}
 
 	/**
-	 * 解析SPEL表达式
+	 * 内存存储执行中时不返回值，读不到值时按key是否存在区分执行中与已释放
 	 */
-	private String parseSpel(Method method, Object[] args, String spel) {
-		Expression expression = parser.parseExpression(spel);
-		MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
-				null, method, args, nameDiscoverer
-		);
-		return expression.getValue(context, String.class);
+	private IdempotentState readState(String redisKey, byte[] payload) {
+		IdempotentState state = resultCodec.state(payload);
+		if (state != null) {
+			return state;
+		}
+		return idempotentStore.exists(redisKey) ? IdempotentState.PROCESSING : IdempotentState.FAILED;
 	}
+
 	/**
-	 * 签名验证的核心逻辑，由 idempotentHandler 调用。
-	 *
+	 * 开启replayResult且有缓存结果时返回该结果，否则拒绝
 	 */
-	private void verifySign() throws Exception {
-		HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest();
-		Map<String, Object> paramsToSign = getAllParams(request);
-
-		String clientSign = (String) paramsToSign.remove("sign");
-		if (clientSign == null) {
-			throw new IdempotentException("签名校验失败：缺少'sign'参数");
-		}
-
-		// 1. 构造待签名字符串（如 key1=value1&key2=value2...）
-		// 直接在原 Map 上处理日期字段
-		paramsToSign.forEach((key, value) -> {
-			if (value == null) {
-				paramsToSign.remove(key); // 空值跳过
-			} else if (value instanceof LocalDate) {
-				paramsToSign.put(key, ((LocalDate) value).format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-			} else if (value instanceof LocalDateTime) {
-				paramsToSign.put(key, ((LocalDateTime) value).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-			} else {
-				paramsToSign.put(key, value.toString()); // 其他类型转字符串
+	private Object replayOrReject(String redisKey, IdempotentMethodMeta meta, byte[] payload) {
+		Idempotent cachedAnno = meta.getIdempotent();
+		if (cachedAnno.replayResult() && resultCodec.isResult(payload)) {
+			try {
+				Object result = resultCodec.decode(payload, meta.getResultType());
+				log.debug("重复请求返回缓存结果, key: {}", redisKey);
+				return result;
+			} catch (IOException e) {
+				log.warn("幂等缓存结果反序列化失败, key: {}", redisKey, e);
 			}
-		});
-		String dataToVerify = RsaUtil.buildSignContent(paramsToSign);
-
-		// 2. 验签
-		PublicKey publicKey = RsaUtil.getPublicKey(idempotentProperties.getPublicKey()); // 从配置中获取公钥
-		boolean verifyResult = RsaUtil.verify(dataToVerify, clientSign, publicKey);
+		}
+		throw new IdempotentException(cachedAnno.info());
+	}
 
-		log.debug("验签原文: {}, 客户端签名: {}", dataToVerify, clientSign);
+	/**
+	 * @return 是否已缓存
+	 */
+	private boolean saveResult(String redisKey, Object result) {
+		byte[] payload = resultCodec.encode(result);
+		return payload != null && saveState(redisKey, payload);
+	}
 
-		if (!verifyResult) {
-			throw new IdempotentException("签名校验失败，参数可能被篡改");
+	private boolean saveState(String redisKey, byte[] payload) {
+		try {
+			idempotentStore.saveResult(redisKey, payload);
+			return true;
+		} catch (Exception e) {
+			// 结果缓存失败不影响本次业务结果，重复请求按原方式拒绝
+			log.warn("幂等结果缓存失败, key: {}", redisKey, e);
+			return false;
 		}
-		log.info("API签名验证通过。");
 	}
 
-	private Map<String, Object> getAllParams(HttpServletRequest request) {
-		Map<String, Object> params = new HashMap<>();
-		// 1. 先取表单参数
-		request.getParameterMap().forEach((k, v) -> params.put(k, v[0]));
-
-		// 2. 如果是JSON，读取body
-		if (request.getContentType() != null && request.getContentType().contains("application/json")) {
-			try {
-				String body = getRequestBody(request);
-				if (!body.isEmpty()) {
-					ObjectMapper mapper = new ObjectMapper();
-					Map<String, Object> jsonMap = mapper.readValue(body, Map.class);
-					jsonMap.forEach((k, v) -> params.put(k, v == null ? "" : v.toString()));
-				}
-			} catch (Exception e) {
-				throw new IdempotentException(e);
-			}
+	/**
+	 * 本地缓存存活时长与redis一致；开启delKey时key可能在delayCheckSeconds后被删除，取两者较小值
+	 */
+	private long localTtlMillis(Idempotent idempotent) {
+		long ttlMillis = idempotent.timeUnit().toMillis(idempotent.expireTime());
+		if (idempotent.delKey()) {
+			ttlMillis = Math.min(ttlMillis, TimeUnit.SECONDS.toMillis(idempotent.delayCheckSeconds()));
 		}
-		return params;
+		return ttlMillis;
 	}
-	//避免只能单次获取
-	private String getRequestBody(HttpServletRequest request) throws IOException {
-		if (request instanceof ContentCachingRequestWrapper) {
-			ContentCachingRequestWrapper wrapper = (ContentCachingRequestWrapper) request;
-			byte[] buf = wrapper.getContentAsByteArray();
-			return new String(buf, wrapper.getCharacterEncoding());
-		} else {
-			// 兼容未包装的情况
-			StringBuilder sb = new StringBuilder();
-			BufferedReader reader = request.getReader();
-			String line;
-			while ((line = reader.readLine()) != null) {
-				sb.append(line);
+
+	private String buildKey(ProceedingJoinPoint joinPoint, IdempotentMethodMeta meta){
+		HttpServletRequest currentRequest = RequestUtils.findCurrentRequest();
+		// key内容直接流式写入复用的SHA-256摘要，不拼接中间字符串
+		IdempotentKeyDigest keyDigest = IdempotentKeyDigest.begin();
+		// 1. 使用自定义SPEL表达式
+		if (meta.getKeyExpression() != null) {
+			keyDigest.append(meta.evaluateKey(joinPoint.getArgs()));
+		}
+		// 2. 自动生成默认Key：类名+方法名+参数哈希
+		else {
+			//同样的，从缓存里拿
+			keyDigest.append(meta.getClassName()).append('.').append(meta.getMethodName()).append(':');
+			if (currentRequest != null) {
+				keyDigest.append(IdempotentKeyDigest.argsHash(joinPoint.getArgs()));
+			} else {
+				// 没有请求体、token和ip区分请求，32位哈希在大量消息之间会碰撞而被误判为重复，改为写入完整参数
+				keyDigest.appendArgs(joinPoint.getArgs());
 			}
-			return sb.toString();
 		}
+
+		// 消息监听、定时任务等没有请求的调用：只由参数与上下文提供者生成key，不读取ip、端口、请求头和请求体
+		if (currentRequest == null) {
+			return keyLayout.build(keyDigest, contextResolver.resolve(meta, joinPoint.getArgs()));
+		}
+
+		// 请求体按规范化形式（与字段顺序无关）流式写入摘要
+		CanonicalJsonHasher.digestRequestBody(currentRequest, keyDigest);
+
+
+		// 获取 当前请求 IP
+		String ipAddress = clientIpResolver.resolve(currentRequest);
+
+		String tokenValue = meta.getTokenHeader().resolve(currentRequest);
+
+
+		// 生成32字节SHA-256哈希值，集群模式下带上分片hash tag
+		return keyLayout.build(keyDigest, tokenValue, ipAddress, currentRequest.getRemotePort());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package api.idempotent.spring.aspect;
+
+import api.idempotent.annotation.Idempotent;
+import api.idempotent.spring.IdempotentProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分布式等待的完成通知
+ * <p>{@link Idempotent.ConcurrentPolicy#DISTRIBUTED_WAIT} 的方法执行结束后向 {@value #CHANNEL} 发布key，
+ * 各节点只用一个订阅连接监听该频道，再按key分发给本节点上等待的请求；订阅在首次使用时才建立。</p>
+ * <p>内存存储或没有redis时只通知本节点。</p>
+ */
+@Slf4j
+@Component
+public class IdempotentCompletionNotifier {
+
+	public static final String CHANNEL = "idempotent:completion";
+
+	private final RedisConnectionFactory redisConnectionFactory;
+	/** 发布用的模板，复用连接工厂的共享连接，不为每次发布单独建立连接 */
+	private final StringRedisTemplate publishTemplate;
+	private final Map<String, List<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+	private volatile RedisMessageListenerContainer container;
+
+	public IdempotentCompletionNotifier(IdempotentProperties idempotentProperties,
+										ObjectProvider<RedisConnectionFactory> redisConnectionFactory) {
+		this.redisConnectionFactory = idempotentProperties.getStore() == IdempotentProperties.StoreType.REDIS
+				? redisConnectionFactory.getIfAvailable() : null;
+		this.publishTemplate = this.redisConnectionFactory != null ? new StringRedisTemplate(this.redisConnectionFactory) : null;
+	}
+
+	@PreDestroy
+	public void stop() {
+		RedisMessageListenerContainer current = container;
+		if (current != null) {
+			try {
+				current.destroy();
+			} catch (Exception e) {
+				log.warn("幂等完成通知订阅关闭失败", e);
+			}
+		}
+	}
+
+	/**
+	 * 登记等待，key完成时返回的future结束；调用方结束等待后须调用 {@link #unsubscribe}
+	 */
+	public CompletableFuture<Void> subscribe(String key) {
+		ensureSubscribed();
+		CompletableFuture<Void> waiter = new CompletableFuture<>();
+		waiters.compute(key, (k, list) -> {
+			List<CompletableFuture<Void>> updated = list != null ? list : new ArrayList<>(1);
+			updated.add(waiter);
+			return updated;
+		});
+		return waiter;
+	}
+
+	public void unsubscribe(String key, CompletableFuture<Void> waiter) {
+		waiters.computeIfPresent(key, (k, list) -> {
+			list.remove(waiter);
+			return list.isEmpty() ? null : list;
+		});
+	}
+
+	/**
+	 * 通知所有节点key已完成
+	 */
+	public void publish(String key) {
+		complete(key);
+		if (publishTemplate == null) {
+			return;
+		}
+		try {
+			publishTemplate.convertAndSend(CHANNEL, key);
+		} catch (Exception e) {
+			// 其他节点的等待会超时后重新读取状态
+			log.warn("幂等完成通知发布失败, key: {}", key, e);
+		}
+	}
+
+	/**
+	 * 本节点等待中的key数
+	 */
+	public int size() {
+		return waiters.size();
+	}
+
+	private void onMessage(Message message, byte[] pattern) {
+		complete(new String(message.getBody(), StandardCharsets.UTF_8));
+	}
+
+	private void complete(String key) {
+		List<CompletableFuture<Void>> list = waiters.remove(key);
+		if (list != null) {
+			list.forEach(waiter -> waiter.complete(null));
+		}
+	}
+
+	private void ensureSubscribed() {
+		if (container != null || redisConnectionFactory == null) {
+			return;
+		}
+		synchronized (this) {
+			if (container == null) {
+				RedisMessageListenerContainer created = new RedisMessageListenerContainer();
+				created.setConnectionFactory(redisConnectionFactory);
+				created.addMessageListener(this::onMessage, new ChannelTopic(CHANNEL));
+				created.afterPropertiesSet();
+				created.start();
+				container = created;
+				log.info("幂等完成通知已订阅: {}", CHANNEL);
+			}
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package api.idempotent.spring.aspect;
+
+import java.io.OutputStream;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 幂等key摘要构建器
+ * <p>每个线程复用一个实例：key的各组成部分按UTF-8直接写入复用的字节缓冲并流式送入SHA-256，
+ * 不再拼接中间字符串；摘要写入复用的字节数组，十六进制编码直接追加到复用的 {@link StringBuilder}。</p>
+ * <p>写入摘要的字节序列与原先 {@code SHA-256(rawKeyContent.getBytes(UTF_8))} 完全一致，生成的key保持不变。</p>
+ */
+public final class IdempotentKeyDigest {
+
+	private static final ThreadLocal<IdempotentKeyDigest> LOCAL = ThreadLocal.withInitial(IdempotentKeyDigest::new);
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final int ARGS_EMPTY_HASH = "[]".hashCode();
+	private static final int ARGS_NULL_HASH = "null".hashCode();
+	private static final int ARGS_SEPARATOR_HASH = ", ".hashCode();
+
+	private final MessageDigest digest;
+	private final byte[] buffer = new byte[512];
+	private final byte[] hash;
+	private final StringBuilder keyBuilder = new StringBuilder(192);
+	private final OutputStream stream = new DigestStream();
+	private int position;
+
+	private IdempotentKeyDigest() {
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256是标准算法，理论上不会发生
+			throw new IllegalStateException("SHA-256 algorithm not available", e);
+		}
+		this.hash = new byte[digest.getDigestLength()];
+	}
+
+	/**
+	 * 取得当前线程的实例并重置状态
+	 */
+	public static IdempotentKeyDigest begin() {
+		IdempotentKeyDigest keyDigest = LOCAL.get();
+		keyDigest.digest.reset();
+		keyDigest.position = 0;
+		keyDigest.keyBuilder.setLength(0);
+		return keyDigest;
+	}
+
+	/**
+	 * 等价于 {@code Arrays.toString(args).hashCode()}，但不拼接整个参数字符串
+	 */
+	public static int argsHash(Object[] args) {
+		if (args == null) {
+			return ARGS_NULL_HASH;
+		}
+		if (args.length == 0) {
+			return ARGS_EMPTY_HASH;
+		}
+		int h = '[';
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0) {
+				h = h * 961 + ARGS_SEPARATOR_HASH;
+			}
+			String element = String.valueOf(args[i]);
+			h = h * pow31(element.length()) + element.hashCode();
+		}
+		return h * 31 + ']';
+	}
+
+	/**
+	 * 按 {@code Arrays.toString(args)} 的格式把全部参数写入摘要，不拼接整个参数字符串
+	 * <p>没有请求体、token和ip区分请求时使用，避免32位的 {@link #argsHash} 在大量不同消息之间碰撞</p>
+	 */
+	public IdempotentKeyDigest appendArgs(Object[] args) {
+		if (args == null) {
+			return append("null");
+		}
+		put((byte) '[');
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0) {
+				put((byte) ',');
+				put((byte) ' ');
+			}
+			append(String.valueOf(args[i]));
+		}
+		put((byte) ']');
+		return this;
+	}
+
+	private static int pow31(int exponent) {
+		int result = 1;
+		int base = 31;
+		while (exponent > 0) {
+			if ((exponent & 1) == 1) {
+				result *= base;
+			}
+			base *= base;
+			exponent >>= 1;
+		}
+		return result;
+	}
+
+	/**
+	 * 按UTF-8写入字符串，null按 "null" 写入
+	 */
+	public IdempotentKeyDigest append(String value) {
+		if (value == null) {
+			value = "null";
+		}
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				put((byte) c);
+			} else if (c < 0x800) {
+				put((byte) (0xC0 | (c >> 6)));
+				put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				put((byte) (0xF0 | (codePoint >> 18)));
+				put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				put((byte) (0x80 | (codePoint & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				// 与String.getBytes(UTF_8)一致，孤立代理字符写为'?'
+				put((byte) '?');
+			} else {
+				put((byte) (0xE0 | (c >> 12)));
+				put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+		return this;
+	}
+
+	public IdempotentKeyDigest append(char c) {
+		if (c < 0x80) {
+			put((byte) c);
+			return this;
+		}
+		return append(String.valueOf(c));
+	}
+
+	/**
+	 * 按十进制写入整数
+	 */
+	public IdempotentKeyDigest append(int value) {
+		if (value == Integer.MIN_VALUE) {
+			return append("-2147483648");
+		}
+		if (value < 0) {
+			put((byte) '-');
+			value = -value;
+		}
+		int divisor = 1;
+		while (value / divisor >= 10) {
+			divisor *= 10;
+		}
+		while (divisor > 0) {
+			put((byte) ('0' + value / divisor % 10));
+			divisor /= 10;
+		}
+		return this;
+	}
+
+	/**
+	 * 写入原始字节
+	 */
+	public IdempotentKeyDigest update(byte[] bytes) {
+		flushBuffer();
+		digest.update(bytes);
+		return this;
+	}
+
+	/**
+	 * 以输出流的形式写入摘要，供序列化器直接输出
+	 */
+	public OutputStream stream() {
+		return stream;
+	}
+
+	/**
+	 * 复用的key拼接缓冲
+	 */
+	public StringBuilder keyBuilder() {
+		return keyBuilder;
+	}
+
+	/**
+	 * 结束摘要，并将64位十六进制摘要追加到key缓冲
+	 */
+	public StringBuilder appendHexDigest() {
+		return finish().appendHex();
+	}
+
+	/**
+	 * 结束摘要，之后可通过 {@link #shard(int)} 和 {@link #appendHex()} 读取结果
+	 */
+	public IdempotentKeyDigest finish() {
+		flushBuffer();
+		try {
+			digest.digest(hash, 0, hash.length);
+		} catch (DigestException e) {
+			throw new IllegalStateException(e);
+		}
+		return this;
+	}
+
+	/**
+	 * 按摘要前4字节将key均匀分到 [0, shards) 中的一个分片
+	 */
+	public int shard(int shards) {
+		int h = ((hash[0] & 0xFF) << 24) | ((hash[1] & 0xFF) << 16) | ((hash[2] & 0xFF) << 8) | (hash[3] & 0xFF);
+		return (h & Integer.MAX_VALUE) % shards;
+	}
+
+	/**
+	 * 将已结束的摘要按64位十六进制追加到key缓冲
+	 */
+	public StringBuilder appendHex() {
+		for (byte b : hash) {
+			keyBuilder.append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+		}
+		return keyBuilder;
+	}
+
+	private void put(byte b) {
+		if (position == buffer.length) {
+			flushBuffer();
+		}
+		buffer[position++] = b;
+	}
+
+	private void flushBuffer() {
+		if (position > 0) {
+			digest.update(buffer, 0, position);
+			position = 0;
+		}
+	}
+
+	private final class DigestStream extends OutputStream {
+		@Override
+		public void write(int b) {
+			put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			flushBuffer();
+			digest.update(b, off, len);
+		}
+	}
+}
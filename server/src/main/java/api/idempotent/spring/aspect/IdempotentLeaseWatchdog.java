@@ -0,0 +1,100 @@
+package api.idempotent.spring.aspect;
+
+import api.idempotent.annotation.Idempotent;
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.store.IdempotentStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 租约续期
+ * <p>{@link Idempotent#lease()} 的方法占用key时只设置 leaseMillis 的有效期，执行期间登记在这里；
+ * 一个共享的续期线程每隔 renewIntervalMillis 把所有执行中的key一次批量续期（redis为一个lua脚本），
+ * 节点宕机后不再续期，key在一个租约周期内自然过期。</p>
+ */
+@Slf4j
+@Component
+public class IdempotentLeaseWatchdog {
+
+	private final IdempotentStore idempotentStore;
+	private final long leaseMillis;
+	private final Set<String> leases = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService renewExecutor;
+
+	public IdempotentLeaseWatchdog(IdempotentStore idempotentStore, IdempotentProperties idempotentProperties) {
+		IdempotentProperties.Lease config = idempotentProperties.getLease();
+		this.idempotentStore = idempotentStore;
+		this.leaseMillis = Math.max(1, config.getLeaseMillis());
+		long renewIntervalMillis = config.getRenewIntervalMillis() > 0
+				? config.getRenewIntervalMillis() : Math.max(1, leaseMillis / 3);
+		this.renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "idempotent-lease-renew");
+			thread.setDaemon(true);
+			return thread;
+		});
+		renewExecutor.scheduleWithFixedDelay(this::renew, renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		renewExecutor.shutdownNow();
+	}
+
+	/**
+	 * 租约有效期（毫秒），即占用时的初始有效期
+	 */
+	public long getLeaseMillis() {
+		return leaseMillis;
+	}
+
+	/**
+	 * 占用成功后登记，开始续期
+	 */
+	public void register(String key) {
+		leases.add(key);
+	}
+
+	/**
+	 * 方法结束后停止续期，由调用方设置最终有效期或释放key
+	 */
+	public void complete(String key) {
+		leases.remove(key);
+	}
+
+	/**
+	 * 当前登记的key数
+	 */
+	public int size() {
+		return leases.size();
+	}
+
+	private void renew() {
+		if (leases.isEmpty()) {
+			return;
+		}
+		List<String> keys = new ArrayList<>(leases);
+		try {
+			// 与此同时结束的key已由completeLease清除租约标记，不会被改回租约有效期
+			BitSet renewed = idempotentStore.renewLeases(keys, leaseMillis);
+			for (int i = renewed.nextClearBit(0); i < keys.size(); i = renewed.nextClearBit(i + 1)) {
+				// 已完成的key可能刚被释放，只对仍在执行的key告警
+				if (leases.remove(keys.get(i))) {
+					log.warn("幂等key租约已失效，执行期间可能有重复请求通过, key: {}", keys.get(i));
+				}
+			}
+			log.debug("幂等key租约续期, 数量: {}", keys.size());
+		} catch (Exception e) {
+			log.error("幂等key租约续期失败, 数量: {}", keys.size(), e);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package api.idempotent.spring.aspect;
+
+import api.idempotent.annotation.Idempotent;
+import api.idempotent.spring.exception.IdempotentException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 本地single-flight合并
+ * <p>以幂等key为粒度记录本节点正在执行的请求，同时到达的相同请求挂到首个请求上，
+ * 按 {@link Idempotent#concurrentPolicy()} 等待其结果或立即拒绝，不再各自访问redis。</p>
+ */
+@Slf4j
+@Component
+public class IdempotentSingleFlight {
+
+	private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * 登记本次请求
+	 *
+	 * @return 已有相同key的请求在执行时返回其future，否则返回null，本次请求成为首个请求
+	 */
+	public CompletableFuture<Object> join(String key, CompletableFuture<Object> flight) {
+		return inFlight.putIfAbsent(key, flight);
+	}
+
+	/**
+	 * 首个请求结束后移除登记
+	 */
+	public void leave(String key, CompletableFuture<Object> flight) {
+		inFlight.remove(key, flight);
+	}
+
+	/**
+	 * 按方法配置等待首个请求的结果或直接拒绝
+	 */
+	public Object await(String key, CompletableFuture<Object> flight, Idempotent idempotent) {
+		if (idempotent.concurrentPolicy() == Idempotent.ConcurrentPolicy.REJECT) {
+			log.warn("重复请求触发幂等拦截(本地并发), key: {}", key);
+			throw new IdempotentException(idempotent.info());
+		}
+		try {
+			Object result = flight.get(idempotent.concurrentWaitMillis(), TimeUnit.MILLISECONDS);
+			if (rejectsCompleted(idempotent)) {
+				log.warn("重复请求触发幂等拦截(首个请求已完成), key: {}", key);
+				throw new IdempotentException(idempotent.info());
+			}
+			log.debug("并发重复请求复用首个请求结果, key: {}", key);
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IdempotentException(idempotent.info());
+		} catch (ExecutionException | TimeoutException e) {
+			log.warn("重复请求触发幂等拦截(等待首个请求失败), key: {}", key);
+			throw new IdempotentException(idempotent.info());
+		}
+	}
+
+	/**
+	 * 返回 CompletableFuture 的方法：以future的形式等待首个请求的结果，不阻塞调用线程；
+	 * 拒绝、超时或首个请求失败时返回失败的future
+	 */
+	public CompletableFuture<Object> awaitAsync(String key, CompletableFuture<Object> flight, Idempotent idempotent) {
+		if (idempotent.concurrentPolicy() == Idempotent.ConcurrentPolicy.REJECT) {
+			log.warn("重复请求触发幂等拦截(本地并发), key: {}", key);
+			return CompletableFuture.failedFuture(new IdempotentException(idempotent.info()));
+		}
+		CompletableFuture<Object> waited = flight.copy()
+				.orTimeout(idempotent.concurrentWaitMillis(), TimeUnit.MILLISECONDS)
+				.exceptionallyCompose(e -> {
+					log.warn("重复请求触发幂等拦截(等待首个请求失败), key: {}", key);
+					return CompletableFuture.failedFuture(new IdempotentException(idempotent.info()));
+				});
+		if (rejectsCompleted(idempotent)) {
+			return waited.thenCompose(result -> {
+				log.warn("重复请求触发幂等拦截(首个请求已完成), key: {}", key);
+				return CompletableFuture.failedFuture(new IdempotentException(idempotent.info()));
+			});
+		}
+		return waited;
+	}
+
+	/**
+	 * 分布式等待未开启replayResult时，其他节点上的等待方拿不到首个请求的结果，只能拒绝；
+	 * 本节点的等待方与之一致，等首个请求结束后同样拒绝，不直接复用其结果
+	 */
+	private static boolean rejectsCompleted(Idempotent idempotent) {
+		return idempotent.concurrentPolicy() == Idempotent.ConcurrentPolicy.DISTRIBUTED_WAIT && !idempotent.replayResult();
+	}
+
+	/**
+	 * 当前正在执行的key数量
+	 */
+	public int size() {
+		return inFlight.size();
+	}
+}
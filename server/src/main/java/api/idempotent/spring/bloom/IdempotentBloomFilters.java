@@ -0,0 +1,156 @@
+package api.idempotent.spring.bloom;
+
+import api.idempotent.annotation.Idempotent;
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.cache.IdempotentMethodMeta;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Idempotent.IdempotentType#PROBABILISTIC} 方法的布隆过滤器
+ * <p>每个方法一个 {@link RotatingBloomFilter}，首次调用时按注解的有效期创建，判重只访问本地内存。</p>
+ * <p>开启 {@code idempotent.bloom.redis-sync} 后定期与redis位图合并：当前桶和上一个桶各一次lua脚本，
+ * 本地位图 BITOP OR 到 {@code idempotent:bloom:{<类名.方法名>:<桶>}}，再取回合并结果并入本地，
+ * 多节点之间的判重延迟不超过一个同步间隔。</p>
+ * <p>只上传上次同步后有新写入的桶；共享位图带有版本号，只有其他节点写入过时才取回。
+ * 最坏情况下（两个桶都有新写入且其他节点也在写入）每次同步上传、取回各两个桶，约为桶大小的4倍
+ * （默认配置下每个桶约1.5MB，即每个方法约6MB），空闲的方法不产生传输。</p>
+ */
+@Slf4j
+@Component
+public class IdempotentBloomFilters {
+
+	private static final String KEY_PREFIX = "idempotent:bloom:";
+
+	/**
+	 * KEYS[1] 共享位图, KEYS[2] 本节点临时位图, KEYS[3] 共享位图版本号（均同slot）,
+	 * ARGV[1] 本地位图（为空时不上传）, ARGV[2] 存活时长（毫秒）, ARGV[3] 本节点已合并的版本号
+	 * 返回 {合并后的版本号, 共享位图}；上传前的版本号与本节点已合并的一致时，合并结果不会多出本地没有的位，不返回位图
+	 */
+	private static final byte[] MERGE_SCRIPT = (
+			"local before = redis.call('GET', KEYS[3]) or '0' " +
+			"if #ARGV[1] > 0 then " +
+			"  redis.call('SET', KEYS[2], ARGV[1], 'PX', 60000) " +
+			"  redis.call('BITOP', 'OR', KEYS[1], KEYS[1], KEYS[2]) " +
+			"  redis.call('DEL', KEYS[2]) " +
+			"  redis.call('INCR', KEYS[3]) " +
+			"  redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+			"  redis.call('PEXPIRE', KEYS[3], ARGV[2]) " +
+			"end " +
+			"local after = redis.call('GET', KEYS[3]) or '0' " +
+			"if before == ARGV[3] then return {after} end " +
+			"return {after, redis.call('GET', KEYS[1])}").getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final IdempotentProperties.Bloom config;
+	private final Map<Method, NamedFilter> filters = new ConcurrentHashMap<>();
+	private final RedisConnectionFactory redisConnectionFactory;
+	private final String nodeId = UUID.randomUUID().toString();
+	private ScheduledExecutorService syncExecutor;
+
+	public IdempotentBloomFilters(IdempotentProperties idempotentProperties,
+								  ObjectProvider<RedisConnectionFactory> redisConnectionFactory) {
+		this.config = idempotentProperties.getBloom();
+		this.redisConnectionFactory = config.isRedisSync() ? redisConnectionFactory.getIfAvailable() : null;
+		if (this.redisConnectionFactory != null) {
+			syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "idempotent-bloom-sync");
+				thread.setDaemon(true);
+				return thread;
+			});
+			syncExecutor.scheduleWithFixedDelay(this::sync, config.getSyncMillis(), config.getSyncMillis(),
+					TimeUnit.MILLISECONDS);
+			log.info("幂等布隆过滤器redis同步已开启, 间隔: {}ms", config.getSyncMillis());
+		} else if (config.isRedisSync()) {
+			log.warn("未找到RedisConnectionFactory，幂等布隆过滤器只在本节点内判重");
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (syncExecutor != null) {
+			syncExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * key未出现过时记录下来
+	 *
+	 * @return true 首次出现；false 可能已出现过
+	 */
+	public boolean putIfAbsent(IdempotentMethodMeta meta, String key) {
+		NamedFilter filter = filters.get(meta.getMethod());
+		if (filter == null) {
+			filter = filters.computeIfAbsent(meta.getMethod(), method -> create(meta));
+		}
+		return filter.filter().putIfAbsent(key);
+	}
+
+	private NamedFilter create(IdempotentMethodMeta meta) {
+		Idempotent idempotent = meta.getIdempotent();
+		RotatingBloomFilter filter = new RotatingBloomFilter(idempotent.timeUnit().toMillis(idempotent.expireTime()),
+				config.getBuckets(), config.getExpectedInsertions(), config.getFpp());
+		log.info("创建幂等布隆过滤器, 方法: {}.{}, 桶: {}x{}ms, 每桶: {}KB, 哈希函数: {}", meta.getClassName(),
+				meta.getMethodName(), filter.getBuckets(), filter.getBucketMillis(), filter.getBitSize() / 8 / 1024,
+				filter.getHashCount());
+		return new NamedFilter(meta.getClassName() + "." + meta.getMethodName(), filter, new HashMap<>());
+	}
+
+	/**
+	 * 当前桶和上一个桶（轮换前最后一段时间的写入）与redis合并，只在单个同步线程中执行
+	 */
+	private void sync() {
+		try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+			for (NamedFilter named : filters.values()) {
+				RotatingBloomFilter filter = named.filter();
+				long current = filter.currentEpoch();
+				named.versions().keySet().removeIf(epoch -> epoch < current - 1);
+				for (long epoch = current - 1; epoch <= current; epoch++) {
+					byte[] local = filter.snapshotIfChanged(epoch);
+					String key = KEY_PREFIX + "{" + named.name() + ":" + epoch + "}";
+					long ttlMillis = filter.getBucketMillis() * (filter.getBuckets() + 1);
+					String known = named.versions().getOrDefault(epoch, "0");
+					List<Object> reply = connection.scriptingCommands().eval(MERGE_SCRIPT, ReturnType.MULTI, 3,
+							bytes(key), bytes(key + ":" + nodeId), bytes(key + ":version"),
+							local != null ? local : EMPTY, bytes(String.valueOf(ttlMillis)), bytes(known));
+					if (reply == null || reply.isEmpty()) {
+						continue;
+					}
+					named.versions().put(epoch, new String((byte[]) reply.get(0), StandardCharsets.UTF_8));
+					if (reply.size() > 1 && reply.get(1) instanceof byte[] merged) {
+						filter.merge(epoch, merged);
+					}
+				}
+			}
+		} catch (Exception e) {
+			log.warn("幂等布隆过滤器redis同步失败", e);
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param versions 各桶已合并到本地的共享位图版本号，只由同步线程访问
+	 */
+	private record NamedFilter(String name, RotatingBloomFilter filter, Map<Long, String> versions) {
+	}
+}
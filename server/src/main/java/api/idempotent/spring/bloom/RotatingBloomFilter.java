@@ -0,0 +1,220 @@
+package api.idempotent.spring.bloom;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按时间分桶轮换的布隆过滤器
+ * <p>时间按 {@code bucketMillis} 划分为桶，key写入当前桶，判重时检查最近 {@code buckets} 个桶；
+ * 桶过期后整体丢弃，因此不需要逐个key过期。同一key写入后至少保留 {@code (buckets - 1) * bucketMillis}。</p>
+ * <p>位数组按 {@code -n·ln(p) / ln²2} 计算，哈希函数个数为 {@code m/n·ln2}：
+ * 误判率1%时每百万个key约1.2MB，0.1%时约1.8MB；判重时检查多个桶，每个桶按 {@code fpp / buckets} 计算，
+ * 整体误判率约为 {@code fpp}。</p>
+ * <p>位的排列与redis位图一致（第0位为第0个字节的最高位），可以直接与redis中的位图互相合并。
+ * 置位通过CAS完成，不加锁；同一key的并发请求由单飞合并，不依赖过滤器本身的原子性。</p>
+ */
+public final class RotatingBloomFilter {
+
+	private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+	private final long bucketMillis;
+	private final int buckets;
+	/** 每个桶的位数，为64的整数倍 */
+	private final long bitSize;
+	private final int hashCount;
+	private final AtomicReferenceArray<Bucket> ring;
+
+	/**
+	 * @param windowMillis       key至少保留的时长
+	 * @param buckets            时间桶数，至少为2
+	 * @param expectedInsertions 单个时间桶内预计写入的key数
+	 * @param fpp                整体目标误判率
+	 */
+	public RotatingBloomFilter(long windowMillis, int buckets, long expectedInsertions, double fpp) {
+		if (fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+		}
+		this.buckets = Math.max(2, buckets);
+		this.bucketMillis = Math.max(1, (windowMillis + this.buckets - 2) / (this.buckets - 1));
+		long n = Math.max(1, expectedInsertions);
+		long bits = (long) Math.ceil(-n * Math.log(fpp / this.buckets) / LN2_SQUARED);
+		// redis位图最大512MB
+		this.bitSize = Math.min((bits + 63) & ~63L, 1L << 32);
+		this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+		this.ring = new AtomicReferenceArray<>(this.buckets);
+	}
+
+	/**
+	 * 每百万个key占用的字节数（单个桶）
+	 */
+	public static long bytesPerMillion(double fpp, int buckets) {
+		return (long) Math.ceil(-1_000_000 * Math.log(fpp / Math.max(2, buckets)) / LN2_SQUARED / 8);
+	}
+
+	/**
+	 * key未出现过时写入当前桶
+	 *
+	 * @return true 首次出现；false 可能已出现过（存在误判）
+	 */
+	public boolean putIfAbsent(String key) {
+		long epoch = currentEpoch();
+		long hash = hash64(key);
+		long h1 = hash & 0xFFFFFFFFL;
+		long h2 = hash >>> 32;
+		Bucket current = bucket(epoch, true);
+		for (int i = 0; i < buckets; i++) {
+			Bucket bucket = ring.get(i);
+			if (bucket != null && bucket != current && bucket.epoch > epoch - buckets && contains(bucket, h1, h2)) {
+				return false;
+			}
+		}
+		return set(current, h1, h2);
+	}
+
+	public long currentEpoch() {
+		return System.currentTimeMillis() / bucketMillis;
+	}
+
+	/**
+	 * 指定桶的位图快照，桶不存在或已过期时返回null
+	 */
+	public byte[] snapshot(long epoch) {
+		Bucket bucket = bucket(epoch, false);
+		if (bucket == null) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(bucket.words.length * Long.BYTES);
+		for (int i = 0; i < bucket.words.length; i++) {
+			buffer.putLong((long) WORDS.getVolatile(bucket.words, i));
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * 指定桶自上次调用以来有新写入时返回其位图快照，否则返回null；并入的远端位不算新写入
+	 * <p>先清除标记再复制，复制期间的写入会重新标记，留到下次</p>
+	 */
+	public byte[] snapshotIfChanged(long epoch) {
+		Bucket bucket = bucket(epoch, false);
+		if (bucket == null || !bucket.changed.getAndSet(false)) {
+			return null;
+		}
+		return snapshot(epoch);
+	}
+
+	/**
+	 * 将redis中同一桶的位图并入本地
+	 */
+	public void merge(long epoch, byte[] bitmap) {
+		if (bitmap == null || epoch <= currentEpoch() - buckets) {
+			return;
+		}
+		Bucket bucket = bucket(epoch, true);
+		if (bucket.epoch != epoch) {
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bitmap);
+		int words = Math.min(bucket.words.length, bitmap.length / Long.BYTES);
+		for (int i = 0; i < words; i++) {
+			long word = buffer.getLong();
+			if (word != 0) {
+				WORDS.getAndBitwiseOr(bucket.words, i, word);
+			}
+		}
+	}
+
+	public long getBucketMillis() {
+		return bucketMillis;
+	}
+
+	public int getBuckets() {
+		return buckets;
+	}
+
+	public long getBitSize() {
+		return bitSize;
+	}
+
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * 取得指定时间的桶；create为true时替换槽位中已过期的桶
+	 */
+	private Bucket bucket(long epoch, boolean create) {
+		int slot = (int) (epoch % buckets);
+		Bucket bucket = ring.get(slot);
+		// 时钟回拨时继续使用较新的桶
+		if (bucket != null && bucket.epoch >= epoch) {
+			return bucket.epoch == epoch || create ? bucket : null;
+		}
+		if (!create) {
+			return null;
+		}
+		Bucket fresh = new Bucket(epoch, new long[(int) (bitSize >>> 6)], new AtomicBoolean());
+		return ring.compareAndSet(slot, bucket, fresh) ? fresh : ring.get(slot);
+	}
+
+	private boolean contains(Bucket bucket, long h1, long h2) {
+		for (int i = 0; i < hashCount; i++) {
+			long index = (h1 + i * h2) % bitSize;
+			if (((long) WORDS.getOpaque(bucket.words, (int) (index >>> 6)) & mask(index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return 是否有位由0变为1
+	 */
+	private boolean set(Bucket bucket, long h1, long h2) {
+		boolean changed = false;
+		for (int i = 0; i < hashCount; i++) {
+			long index = (h1 + i * h2) % bitSize;
+			int word = (int) (index >>> 6);
+			long mask = mask(index);
+			if (((long) WORDS.getOpaque(bucket.words, word) & mask) == 0) {
+				changed |= ((long) WORDS.getAndBitwiseOr(bucket.words, word, mask) & mask) == 0;
+			}
+		}
+		if (changed && !bucket.changed.get()) {
+			bucket.changed.set(true);
+		}
+		return changed;
+	}
+
+	/**
+	 * 第index位在所属long中的掩码，高位在前，与redis位图的字节序一致
+	 */
+	private static long mask(long index) {
+		return Long.MIN_VALUE >>> (index & 63);
+	}
+
+	/**
+	 * FNV-1a累加后经murmur3的fmix64混合，两半分别作为双重哈希的两个基
+	 */
+	private static long hash64(String key) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0, length = key.length(); i < length; i++) {
+			h = (h ^ key.charAt(i)) * 0x100000001B3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * @param changed 自上次 {@link #snapshotIfChanged} 以来是否有新写入
+	 */
+	private record Bucket(long epoch, long[] words, AtomicBoolean changed) {
+	}
+}
@@ -0,0 +1,96 @@
+package api.idempotent.spring.cache;
+
+import api.idempotent.spring.IdempotentProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等key本地近端缓存
+ * <p>记录本节点最近成功获取的key，同一节点上的连点/重试风暴直接在本地拒绝，不再请求redis。</p>
+ * <p>只缓存"已占用"的结果，首次出现的key仍以redis为准。</p>
+ */
+@Slf4j
+@Component
+public class IdempotentLocalCache {
+
+	private final boolean enabled;
+	/** value为该条目的存活时长（纳秒），用于逐条目过期 */
+	private final Cache<String, Long> cache;
+
+	public IdempotentLocalCache(IdempotentProperties idempotentProperties) {
+		IdempotentProperties.LocalCache config = idempotentProperties.getLocalCache();
+		this.enabled = config.isEnabled();
+		this.cache = enabled ? Caffeine.newBuilder()
+				.maximumSize(config.getMaximumSize())
+				.expireAfter(new TtlExpiry())
+				.recordStats()
+				.build() : null;
+		if (enabled) {
+			log.info("幂等本地缓存已开启, 最大条目数: {}", config.getMaximumSize());
+		}
+	}
+
+	/**
+	 * 本地是否已有未过期的同名key
+	 */
+	public boolean isDuplicate(String key) {
+		return enabled && cache.getIfPresent(key) != null;
+	}
+
+	/**
+	 * 记录redis获取成功的key，存活时长与redis中的过期时间一致
+	 */
+	public void put(String key, long ttl, TimeUnit timeUnit) {
+		long ttlNanos = timeUnit.toNanos(ttl);
+		if (enabled && ttlNanos > 0) {
+			cache.put(key, ttlNanos);
+		}
+	}
+
+	/**
+	 * key被释放时同步移除本地记录
+	 */
+	public void invalidate(String key) {
+		if (enabled) {
+			cache.invalidate(key);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * 命中/未命中/淘汰统计，用于评估容量
+	 */
+	public CacheStats stats() {
+		return enabled ? cache.stats() : CacheStats.empty();
+	}
+
+	public long estimatedSize() {
+		return enabled ? cache.estimatedSize() : 0;
+	}
+
+	private static class TtlExpiry implements Expiry<String, Long> {
+		@Override
+		public long expireAfterCreate(String key, Long ttlNanos, long currentTime) {
+			return ttlNanos;
+		}
+
+		@Override
+		public long expireAfterUpdate(String key, Long ttlNanos, long currentTime, long currentDuration) {
+			return ttlNanos;
+		}
+
+		@Override
+		public long expireAfterRead(String key, Long ttlNanos, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+	}
+}
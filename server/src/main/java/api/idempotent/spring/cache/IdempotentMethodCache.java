@@ -1,76 +1,167 @@
 package api.idempotent.spring.cache;
 
+import api.idempotent.HeaderNameMatcher;
 import api.idempotent.annotation.Idempotent;
 import api.idempotent.spring.IdempotentProperties;
 import api.idempotent.spring.exception.IdempotentException;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.reflections.Reflections;
-import org.reflections.scanners.Scanners;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.List;
+import java.lang.reflect.Type;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
+/**
+ * 幂等方法元数据缓存
+ * <p>在Spring创建每个bean时收集其 {@link Idempotent} 方法（含父类、接口上声明的方法，代理bean取其目标类），
+ * 不再做类路径扫描，也不需要配置扫描包。</p>
+ */
 @Slf4j
 @Component
-public class IdempotentMethodCache {
+public class IdempotentMethodCache implements BeanPostProcessor {
 
-	private final Map<String, IdempotentMethodMeta> methodMetaMap = new ConcurrentHashMap<>();
-	private final IdempotentProperties idempotentProperties;
-	public IdempotentMethodCache(IdempotentProperties idempotentProperties) {
+	/** 以Method对象本身为key，查找时不需要拼接任何字符串 */
+	private final Map<Method, IdempotentMethodMeta> methodMetaMap = new ConcurrentHashMap<>();
+	private final ObjectProvider<IdempotentProperties> idempotentProperties;
+	/** 已处理过的类，prototype等重复创建的bean不再重复解析 */
+	private final Set<Class<?>> processedClasses = ConcurrentHashMap.newKeySet();
+	/** MIXED模式：可编译时编译为字节码，编译失败时自动回退为解释执行 */
+	private final SpelExpressionParser parser = new SpelExpressionParser(
+			new SpelParserConfiguration(SpelCompilerMode.MIXED, IdempotentMethodCache.class.getClassLoader()));
+	private final DefaultParameterNameDiscoverer nameDiscoverer = new DefaultParameterNameDiscoverer();
+
+	/**
+	 * 配置通过ObjectProvider延迟获取，避免BeanPostProcessor提前实例化配置类导致属性未绑定
+	 */
+	public IdempotentMethodCache(ObjectProvider<IdempotentProperties> idempotentProperties) {
 		this.idempotentProperties = idempotentProperties;
 	}
 
-
-	@PostConstruct
-	public void init() {
-		List<String> scanPackages = idempotentProperties.getScanPackages();
-		if (CollectionUtils.isEmpty(scanPackages)) {
-			throw new IdempotentException("包路径配置为空");
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		Class<?> targetClass = ClassUtils.getUserClass(AopUtils.getTargetClass(bean));
+		if (processedClasses.add(targetClass)) {
+			register(targetClass);
 		}
+		return bean;
+	}
 
-		log.info("开始扫描幂等方法，扫描路径: {}", scanPackages);
-		for (String basePackage : scanPackages) {
-			Reflections reflections = new Reflections(basePackage, Scanners.MethodsAnnotated);
-			Set<Method> methods = reflections.getMethodsAnnotatedWith(Idempotent.class);
+	/**
+	 * 收集并缓存一个类上的所有幂等方法
+	 */
+	public void register(Class<?> targetClass) {
+		Map<Method, Idempotent> methods = MethodIntrospector.selectMethods(targetClass,
+				(MethodIntrospector.MetadataLookup<Idempotent>) method ->
+						AnnotatedElementUtils.findMergedAnnotation(method, Idempotent.class));
+		methods.forEach((method, idempotent) -> {
+			register(method, idempotent);
+			// JDK动态代理时切点签名为接口方法，按接口方法再登记一次
+			Method interfaceMethod = ClassUtils.getInterfaceMethodIfPossible(method, targetClass);
+			if (interfaceMethod != method) {
+				register(interfaceMethod, idempotent);
+			}
+		});
+		if (!methods.isEmpty()) {
+			log.debug("缓存幂等方法: {} 共 {} 个, 当前总数: {}", targetClass.getName(), methods.size(), methodMetaMap.size());
+		}
+	}
 
-			for (Method method : methods) {
-				Idempotent idempotent = method.getAnnotation(Idempotent.class);
-				Class<?> clazz = method.getDeclaringClass();
+	private void register(Method method, Idempotent idempotent) {
+		if (methodMetaMap.containsKey(method)) {
+			return;
+		}
+		Class<?> clazz = method.getDeclaringClass();
+		String tokenHeader = idempotent.tokenHeader();
+		if (!StringUtils.hasText(tokenHeader)) {
+			IdempotentProperties properties = idempotentProperties.getIfAvailable();
+			tokenHeader = properties != null ? properties.getTokenHeader() : null;
+		}
+		Class<?> returnType = method.getReturnType();
+		boolean asyncResult = returnType.isAssignableFrom(CompletableFuture.class)
+				&& CompletionStage.class.isAssignableFrom(returnType);
+		IdempotentMethodMeta meta = IdempotentMethodMeta.builder()
+				.method(method)
+				.idempotent(idempotent)
+				.className(clazz.getName())
+				.methodName(method.getName())
+				.keyExpression(compileKey(clazz.getName() + "#" + method.getName(), idempotent.key()))
+				.argumentVariables(resolveArgumentVariables(method))
+				.resultType(resolveResultType(method, asyncResult))
+				.asyncResult(asyncResult)
+				.tokenHeader(HeaderNameMatcher.of(tokenHeader))
+				.build();
+		methodMetaMap.putIfAbsent(method, meta);
+	}
 
-				String key = buildMethodKey(clazz, method);
-				IdempotentMethodMeta meta = new IdempotentMethodMeta();
-				meta.setMethod(method);
-				meta.setIdempotent(idempotent);
-				meta.setClassName(clazz.getName());
-				meta.setMethodName(method.getName());
-				meta.setParamTypeNames(Arrays.stream(method.getParameterTypes())
-						.map(Class::getName).collect(Collectors.toList()));
-				methodMetaMap.put(key, meta);
-				log.debug("缓存幂等方法: {}", key);
+	/**
+	 * 按切点方法查找执行计划
+	 * <p>未登记的方法（如未经过本处理器的bean）在首次调用时按注解补登记一次</p>
+	 */
+	public IdempotentMethodMeta getMeta(Method method) {
+		IdempotentMethodMeta meta = methodMetaMap.get(method);
+		if (meta == null) {
+			Idempotent idempotent = AnnotatedElementUtils.findMergedAnnotation(method, Idempotent.class);
+			if (idempotent == null) {
+				return null;
 			}
+			register(method, idempotent);
+			meta = methodMetaMap.get(method);
 		}
-		log.info("幂等方法扫描完成，共缓存 {} 个方法。", methodMetaMap.size());
+		return meta;
 	}
 
-    public IdempotentMethodMeta getMeta(String className, String methodName, List<String> paramTypeNames) {
-        String key = buildMethodKey(className, methodName, paramTypeNames);
-        return methodMetaMap.get(key);
-    }
+	/**
+	 * 异步方法缓存future的元素类型，无法确定时按Object处理
+	 */
+	private Type resolveResultType(Method method, boolean asyncResult) {
+		if (!asyncResult) {
+			return method.getGenericReturnType();
+		}
+		ResolvableType elementType = ResolvableType.forMethodReturnType(method).as(CompletionStage.class).getGeneric(0);
+		return elementType == ResolvableType.NONE ? Object.class : elementType.getType();
+	}
 
-    private String buildMethodKey(Class<?> clazz, Method method) {
-        return buildMethodKey(clazz.getName(), method.getName(),
-                Arrays.stream(method.getParameterTypes()).map(Class::getName).collect(Collectors.toList()));
-    }
+	/**
+	 * 启动时解析key表达式，非法表达式直接启动失败而不是等到第一次请求
+	 */
+	private Expression compileKey(String methodKey, String spel) {
+		if (!StringUtils.hasText(spel)) {
+			return null;
+		}
+		try {
+			return parser.parseExpression(spel);
+		} catch (ParseException e) {
+			throw new IdempotentException("幂等key表达式解析失败: " + methodKey + " -> " + spel, e);
+		}
+	}
 
-    private String buildMethodKey(String className, String methodName, List<String> paramTypeNames) {
-        return className + "#" + methodName + "#" + String.join(",", paramTypeNames);
-    }
-}
\ No newline at end of file
+	private String[][] resolveArgumentVariables(Method method) {
+		String[] names = nameDiscoverer.getParameterNames(method);
+		String[][] variables = new String[method.getParameterCount()][];
+		for (int i = 0; i < variables.length; i++) {
+			variables[i] = names != null && i < names.length
+					? new String[]{names[i], "p" + i, "a" + i}
+					: new String[]{"p" + i, "a" + i};
+		}
+		return variables;
+	}
+}
@@ -1,25 +1,53 @@
 package api.idempotent.spring.cache;
 
 
+import api.idempotent.HeaderNameMatcher;
 import api.idempotent.annotation.Idempotent;
-import lombok.Data;
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
 
 import java.lang.reflect.Method;
-import java.util.List;
+import java.lang.reflect.Type;
 
 /**
  * 幂等方法元信息缓存对象
+ * <p>启动时一次性构建的不可变执行计划，切面热路径上只读取，不再做任何解析或拼接。</p>
  */
-@Data
+@Value
+@Builder
 public class IdempotentMethodMeta {
 	/** 方法 */
-	private Method method;
+	Method method;
 	/** 幂等性注解 */
-	private Idempotent idempotent;
+	Idempotent idempotent;
 	/** 类名 */
-	private String className;
+	String className;
 	/** 方法名称 */
-	private String methodName;
-	/** 参数类型名称 */
-	private List<String> paramTypeNames;
-}
\ No newline at end of file
+	String methodName;
+	/** 预编译的key表达式（未配置key时为null） */
+	Expression keyExpression;
+	/** 每个参数在SpEL中可用的变量名：参数名（可获取时）、p{i}、a{i} */
+	String[][] argumentVariables;
+	/** 缓存结果的类型，用于还原缓存的执行结果：同步方法为声明的返回类型，异步方法为future的元素类型 */
+	Type resultType;
+	/** 返回 CompletableFuture/CompletionStage：key的释放与结果缓存在future完成时进行 */
+	boolean asyncResult;
+	/** 生效的令牌请求头（注解tokenHeader优先，否则为全局配置），启动时解析为匹配器 */
+	HeaderNameMatcher tokenHeader;
+
+	/**
+	 * 以本次调用的参数求值key表达式
+	 * <p>表达式与参数名在启动时已缓存，这里只绑定本次调用的参数（支持 #name / #p0 / #a0）</p>
+	 */
+	public String evaluateKey(Object[] args) {
+		StandardEvaluationContext context = new StandardEvaluationContext();
+		for (int i = 0; i < args.length && i < argumentVariables.length; i++) {
+			for (String variable : argumentVariables[i]) {
+				context.setVariable(variable, args[i]);
+			}
+		}
+		return keyExpression.getValue(context, String.class);
+	}
+}
@@ -0,0 +1,27 @@
+package api.idempotent.spring.context;
+
+import api.idempotent.spring.cache.IdempotentMethodMeta;
+
+/**
+ * 非HTTP调用的幂等上下文提供者
+ * <p>消息监听、定时任务、gRPC等调用中没有servlet请求，key只由参数（或SpEL）与上下文提供者的结果生成，
+ * 不再读取ip、端口、请求头和请求体。注册为bean即可生效，多个提供者按 {@link org.springframework.core.Ordered} 排序。</p>
+ *
+ * <pre>{@code
+ * @Bean
+ * IdempotentContextProvider kafkaContext() {
+ *     return (meta, args) -> args.length > 0 && args[0] instanceof ConsumerRecord<?, ?> record
+ *             ? record.topic() + "-" + record.partition() : null;
+ * }
+ * }</pre>
+ */
+@FunctionalInterface
+public interface IdempotentContextProvider {
+
+	/**
+	 * 当前调用的上下文标识，例如消息的topic/分区、定时任务名、gRPC方法与调用方，作为key的一部分
+	 *
+	 * @return 不在该提供者负责的上下文中时返回null
+	 */
+	String contextKey(IdempotentMethodMeta meta, Object[] args);
+}
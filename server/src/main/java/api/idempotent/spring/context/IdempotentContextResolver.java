@@ -0,0 +1,53 @@
+package api.idempotent.spring.context;
+
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.cache.IdempotentMethodMeta;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 没有请求时key中代替 {@code token:ip:port} 的上下文部分
+ * <p>依次调用各 {@link IdempotentContextProvider}，非null的结果以 ':' 连接；都没有提供时为 {@value #NO_CONTEXT}。</p>
+ */
+@Component
+public class IdempotentContextResolver {
+
+	public static final String NO_CONTEXT = "local";
+
+	private final List<IdempotentContextProvider> providers;
+	private final boolean requireRequest;
+
+	public IdempotentContextResolver(IdempotentProperties idempotentProperties,
+									 ObjectProvider<IdempotentContextProvider> providers) {
+		this.providers = providers.orderedStream().toList();
+		this.requireRequest = idempotentProperties.isRequireRequest();
+	}
+
+	/**
+	 * @throws IllegalStateException 配置为必须在请求中使用时
+	 */
+	public String resolve(IdempotentMethodMeta meta, Object[] args) {
+		if (requireRequest) {
+			throw new IllegalStateException("当前线程中不存在请求上下文");
+		}
+		StringBuilder context = null;
+		for (IdempotentContextProvider provider : providers) {
+			String key = provider.contextKey(meta, args);
+			if (key == null) {
+				continue;
+			}
+			if (context == null) {
+				context = new StringBuilder(key);
+			} else {
+				context.append(':').append(key);
+			}
+		}
+		return context != null ? context.toString() : NO_CONTEXT;
+	}
+
+	public boolean isRequireRequest() {
+		return requireRequest;
+	}
+}
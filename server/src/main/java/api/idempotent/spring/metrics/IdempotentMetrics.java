@@ -0,0 +1,155 @@
+package api.idempotent.spring.metrics;
+
+import api.idempotent.spring.cache.IdempotentMethodMeta;
+import api.idempotent.spring.monitor.RedisDelayedDeleteService;
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等组件的Micrometer指标
+ * <p>容器中没有MeterRegistry时注册到 {@link Metrics#globalRegistry}，未接入监控系统时等同于空操作。</p>
+ * <p>标签取值都是有限集合：method 为 @Idempotent 方法（类名.方法名），result 为固定枚举值，
+ * 不会把key、token、ip等请求维度的值写入标签。</p>
+ */
+@Component
+public class IdempotentMetrics {
+
+	public static final String KEY_DERIVATION = "idempotent.key.derivation";
+	public static final String STORE_ACQUIRE = "idempotent.store.acquire";
+	public static final String BLOOM_CHECK = "idempotent.bloom.check";
+	public static final String DECISIONS = "idempotent.decisions";
+	public static final String SIGN_VERIFY = "idempotent.sign.verify";
+	public static final String DELAY_DELETE_BACKLOG = "idempotent.delay.delete.backlog";
+	public static final String DELAY_DELETE_LAG = "idempotent.delay.delete.lag";
+	public static final String DELAY_DELETE_DRAIN_LATENCY = "idempotent.delay.delete.drain.latency";
+	public static final String DELAY_DELETE_LOCAL_PENDING = "idempotent.delay.delete.local.pending";
+	public static final String MONITOR_SWEEP = "idempotent.monitor.sweep";
+
+	private final MeterRegistry registry;
+	/** 按Method缓存各方法的指标，热路径上不做标签查找 */
+	private final Map<Method, MethodMeters> methodMeters = new ConcurrentHashMap<>();
+	private final Timer signVerifySuccess;
+	private final Timer signVerifyFailure;
+	private final Timer monitorSweepSuccess;
+	private final Timer monitorSweepFailure;
+
+	public IdempotentMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+		this.registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+		this.signVerifySuccess = Timer.builder(SIGN_VERIFY).description("验签耗时")
+				.tag("result", "success").register(registry);
+		this.signVerifyFailure = Timer.builder(SIGN_VERIFY).description("验签耗时")
+				.tag("result", "failure").register(registry);
+		this.monitorSweepSuccess = Timer.builder(MONITOR_SWEEP).description("幂等key巡检耗时")
+				.tag("result", "success").register(registry);
+		this.monitorSweepFailure = Timer.builder(MONITOR_SWEEP).description("幂等key巡检耗时")
+				.tag("result", "failure").register(registry);
+	}
+
+	/**
+	 * 取得方法对应的指标
+	 */
+	public MethodMeters method(IdempotentMethodMeta meta) {
+		MethodMeters meters = methodMeters.get(meta.getMethod());
+		if (meters == null) {
+			meters = methodMeters.computeIfAbsent(meta.getMethod(),
+					m -> new MethodMeters(registry, meta.getClassName() + "." + meta.getMethodName()));
+		}
+		return meters;
+	}
+
+	public void recordSignVerify(long startNanos, boolean success) {
+		(success ? signVerifySuccess : signVerifyFailure).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void recordMonitorSweep(long startNanos, boolean success) {
+		(success ? monitorSweepSuccess : monitorSweepFailure).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 注册延迟删除队列的深度与积压指标（读取最近一次清理时的值，不额外访问redis）
+	 */
+	public void bindDelayDeleteQueue(RedisDelayedDeleteService service) {
+		Gauge.builder(DELAY_DELETE_BACKLOG, service, RedisDelayedDeleteService::getBacklog)
+				.description("已到期但尚未删除的延迟删除任务数").register(registry);
+		TimeGauge.builder(DELAY_DELETE_LAG, service, TimeUnit.MILLISECONDS, RedisDelayedDeleteService::getDrainLagMillis)
+				.description("最早到期任务的积压时长").register(registry);
+		TimeGauge.builder(DELAY_DELETE_DRAIN_LATENCY, service, TimeUnit.MILLISECONDS, RedisDelayedDeleteService::getLastDrainLatencyMillis)
+				.description("最近一次清理脚本耗时").register(registry);
+		Gauge.builder(DELAY_DELETE_LOCAL_PENDING, service, RedisDelayedDeleteService::getLocalPending)
+				.description("本地时间轮中挂起的延迟删除任务数").register(registry);
+	}
+
+	/**
+	 * 单个@Idempotent方法的指标
+	 */
+	public static final class MethodMeters {
+
+		private final Timer keyDerivation;
+		private final Timer storeAcquire;
+		private final Counter acquired;
+		private final Counter duplicate;
+		private final Counter localDuplicate;
+		private final Counter inFlight;
+		private final Timer bloomCheck;
+		private final Counter bloomDuplicate;
+
+		private MethodMeters(MeterRegistry registry, String method) {
+			this.keyDerivation = Timer.builder(KEY_DERIVATION).description("幂等key生成耗时")
+					.tag("method", method).register(registry);
+			this.storeAcquire = Timer.builder(STORE_ACQUIRE).description("幂等存储占用key耗时（redis为SET NX）")
+					.tag("method", method).register(registry);
+			this.acquired = decision(registry, method, "acquired");
+			this.duplicate = decision(registry, method, "duplicate");
+			this.localDuplicate = decision(registry, method, "local_duplicate");
+			this.inFlight = decision(registry, method, "in_flight");
+			this.bloomCheck = Timer.builder(BLOOM_CHECK).description("布隆过滤器判重耗时")
+					.tag("method", method).register(registry);
+			this.bloomDuplicate = decision(registry, method, "bloom_duplicate");
+		}
+
+		private static Counter decision(MeterRegistry registry, String method, String result) {
+			return Counter.builder(DECISIONS).description("幂等判定结果")
+					.tag("method", method).tag("result", result).register(registry);
+		}
+
+		public void recordKeyDerivation(long startNanos) {
+			keyDerivation.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * 记录一次存储占用及其结果
+		 */
+		public void recordAcquire(long startNanos, boolean success) {
+			storeAcquire.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+			(success ? acquired : duplicate).increment();
+		}
+
+		/**
+		 * 本地近端缓存拒绝的重复请求
+		 */
+		public void localDuplicate() {
+			localDuplicate.increment();
+		}
+
+		/**
+		 * 记录一次布隆过滤器判重及其结果
+		 */
+		public void recordBloomCheck(long startNanos, boolean fresh) {
+			bloomCheck.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+			(fresh ? acquired : bloomDuplicate).increment();
+		}
+
+		/**
+		 * 本节点已有相同key在执行，合并到该请求
+		 */
+		public void inFlight() {
+			inFlight.increment();
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package api.idempotent.spring.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮
+ * <p>任务按到期tick散列到槽位，超出一圈的任务记录剩余圈数；单个工作线程按tick推进，
+ * 同一tick到期的任务合并为一批交给回调处理。</p>
+ * <p>提交线程只写无锁队列，槽位只由工作线程访问，因此槽位本身不需要同步；
+ * 停止时同样由工作线程在退出前取出未到期任务。</p>
+ *
+ * @param <T> 任务类型
+ */
+@Slf4j
+public class HashedTimingWheel<T> {
+
+	private final long tickNanos;
+	private final int mask;
+	private final int maxPending;
+	private final Consumer<List<T>> expiredHandler;
+	private final List<List<Slot<T>>> wheel;
+	private final Queue<Slot<T>> incoming = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final CountDownLatch terminated = new CountDownLatch(1);
+	private final Thread worker;
+	private final long startTime;
+	private volatile boolean running = true;
+	/** 停止时接收未到期任务，先于running写入，工作线程看到停止时一定能看到它 */
+	private volatile Consumer<List<Pending<T>>> remainingHandler;
+	private long tick;
+
+	/**
+	 * @param name           工作线程名称
+	 * @param tickMillis     每个tick的时长（毫秒），即调度精度
+	 * @param wheelSize      槽位数，会向上取整为2的幂
+	 * @param maxPending     最多挂起的任务数，超出时 {@link #schedule} 返回false
+	 * @param expiredHandler 到期任务的批量处理回调，在工作线程中执行
+	 */
+	public HashedTimingWheel(String name, long tickMillis, int wheelSize, int maxPending, Consumer<List<T>> expiredHandler) {
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+		int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+		this.mask = size - 1;
+		this.maxPending = maxPending;
+		this.expiredHandler = expiredHandler;
+		this.wheel = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			wheel.add(new LinkedList<>());
+		}
+		this.startTime = System.nanoTime();
+		this.worker = new Thread(this::run, name);
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * 提交延迟任务
+	 *
+	 * @return 已停止或挂起任务数超过上限时返回false，由调用方自行兜底
+	 */
+	public boolean schedule(T task, long delayMillis) {
+		if (!running) {
+			return false;
+		}
+		if (pending.incrementAndGet() > maxPending) {
+			pending.decrementAndGet();
+			return false;
+		}
+		long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+		incoming.add(new Slot<>(task, deadline, System.currentTimeMillis() + Math.max(0, delayMillis)));
+		return true;
+	}
+
+	/**
+	 * 当前挂起的任务数
+	 */
+	public int pending() {
+		return pending.get();
+	}
+
+	/**
+	 * 停止时间轮，丢弃未到期任务
+	 */
+	public void stop() {
+		stop(remaining -> {
+		});
+	}
+
+	/**
+	 * 停止时间轮，所有未到期任务及其原定执行时间（毫秒时间戳）交给回调处理
+	 * <p>槽位由工作线程在退出前取出并调用回调，最多等待5秒；工作线程仍在执行到期回调时不等待，
+	 * 回调在其结束后于工作线程中执行，停止过程中不会与工作线程同时访问槽位。</p>
+	 */
+	public void stop(Consumer<List<Pending<T>>> remainingHandler) {
+		this.remainingHandler = remainingHandler;
+		running = false;
+		worker.interrupt();
+		boolean stopped = false;
+		try {
+			stopped = terminated.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (!stopped) {
+			log.warn("时间轮工作线程未在5秒内停止, 未到期任务将在其结束后转交: {}", pending.get());
+			return;
+		}
+		// 工作线程取出之后才写入的任务
+		List<Pending<T>> late = drainIncoming(new ArrayList<>());
+		if (!late.isEmpty()) {
+			pending.addAndGet(-late.size());
+			remainingHandler.accept(late);
+		}
+	}
+
+	private void run() {
+		try {
+			while (running) {
+				long deadline = waitForNextTick();
+				if (deadline < 0) {
+					break;
+				}
+				transferIncoming();
+				List<T> expired = expire(wheel.get((int) (tick & mask)), deadline);
+				tick++;
+				if (!expired.isEmpty()) {
+					pending.addAndGet(-expired.size());
+					try {
+						expiredHandler.accept(expired);
+					} catch (Exception e) {
+						log.error("时间轮任务处理失败, 本批: {}", expired.size(), e);
+					}
+				}
+			}
+		} finally {
+			if (!running) {
+				handOverRemaining();
+			}
+			terminated.countDown();
+		}
+	}
+
+	/**
+	 * 停止时在工作线程中取出所有槽位与队列中的任务，交给停止回调
+	 */
+	private void handOverRemaining() {
+		List<Pending<T>> remaining = new ArrayList<>(pending.get());
+		for (List<Slot<T>> bucket : wheel) {
+			for (Slot<T> slot : bucket) {
+				remaining.add(new Pending<>(slot.task, slot.executeTime));
+			}
+			bucket.clear();
+		}
+		drainIncoming(remaining);
+		pending.addAndGet(-remaining.size());
+		if (remaining.isEmpty()) {
+			return;
+		}
+		try {
+			remainingHandler.accept(remaining);
+		} catch (Exception e) {
+			log.error("时间轮停止时转交未到期任务失败: {}", remaining.size(), e);
+		}
+	}
+
+	private List<Pending<T>> drainIncoming(List<Pending<T>> remaining) {
+		Slot<T> slot;
+		while ((slot = incoming.poll()) != null) {
+			remaining.add(new Pending<>(slot.task, slot.executeTime));
+		}
+		return remaining;
+	}
+
+	/**
+	 * 睡眠到下一个tick，返回该tick相对启动时间的纳秒数，被中断时返回-1
+	 */
+	private long waitForNextTick() {
+		long deadline = tickNanos * (tick + 1);
+		while (true) {
+			long sleepNanos = deadline - (System.nanoTime() - startTime);
+			if (sleepNanos <= 0) {
+				return deadline;
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(sleepNanos);
+			} catch (InterruptedException e) {
+				if (!running) {
+					return -1;
+				}
+			}
+		}
+	}
+
+	private void transferIncoming() {
+		Slot<T> slot;
+		while ((slot = incoming.poll()) != null) {
+			long calculated = slot.deadline / tickNanos;
+			slot.remainingRounds = (calculated - tick) / wheel.size();
+			// 已经过期的任务放到当前槽位，本tick立即执行
+			long ticks = Math.max(calculated, tick);
+			wheel.get((int) (ticks & mask)).add(slot);
+		}
+	}
+
+	private List<T> expire(List<Slot<T>> bucket, long deadline) {
+		List<T> expired = new ArrayList<>();
+		Iterator<Slot<T>> iterator = bucket.iterator();
+		while (iterator.hasNext()) {
+			Slot<T> slot = iterator.next();
+			if (slot.remainingRounds <= 0 && slot.deadline <= deadline) {
+				iterator.remove();
+				expired.add(slot.task);
+			} else {
+				slot.remainingRounds--;
+			}
+		}
+		return expired;
+	}
+
+	private static final class Slot<T> {
+		private final T task;
+		/** 相对时间轮启动时间的纳秒数 */
+		private final long deadline;
+		/** 原定执行时间（毫秒时间戳），停止时用于转存 */
+		private final long executeTime;
+		private long remainingRounds;
+
+		private Slot(T task, long deadline, long executeTime) {
+			this.task = task;
+			this.deadline = deadline;
+			this.executeTime = executeTime;
+		}
+	}
+
+	/**
+	 * 停止时尚未执行的任务
+	 */
+	public record Pending<T>(T task, long executeTime) {
+	}
+}
@@ -1,35 +1,184 @@
 package api.idempotent.spring.monitor;
 
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.metrics.IdempotentMetrics;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.data.redis.core.RedisTemplate;
-import jakarta.annotation.Resource;
-import java.util.Set;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等key巡检
+ * <p>增量SCAN所有幂等key，删除未设置过期时间的异常key。</p>
+ * <p>每批的SCAN、TTL检查和删除在一个lua脚本内完成；游标按节点持久化在redis中，
+ * 单次巡检超时或应用重启后从断点继续；集群模式下逐个master节点执行。</p>
+ */
 @Component
 @Slf4j
+@ConditionalOnProperty(prefix = "idempotent", name = "store", havingValue = "redis", matchIfMissing = true)
 public class IdempotentKeyMonitor {
 
+    private static final String KEY_PATTERN = "idempotent:*";
+    /** 各节点的巡检游标 */
+    private static final String CURSOR_KEY = "idempotent:monitor:cursor";
+    /** 巡检锁，同一时间只有一个应用节点在巡检 */
+    private static final String LOCK_KEY = "idempotent:monitor:lock";
+    private static final String STANDALONE_NODE = "standalone";
+    private static final long SCRIPT_TIMEOUT_SECONDS = 10;
+    private static final byte[][] NO_KEYS = new byte[0][];
+
+    /**
+     * ARGV[1] 游标, ARGV[2] 匹配模式, ARGV[3] COUNT
+     * 返回 {下一个游标, 被删除的key列表}；只处理string类型，延迟队列等内部结构不受影响
+     */
+    private static final String SWEEP_SCRIPT =
+            "local result = redis.call('SCAN', ARGV[1], 'MATCH', ARGV[2], 'COUNT', ARGV[3]) " +
+            "local removed = {} " +
+            "for _, key in ipairs(result[2]) do " +
+            "  if redis.call('PTTL', key) == -1 and redis.call('TYPE', key)['ok'] == 'string' then " +
+            "    redis.call('DEL', key) " +
+            "    removed[#removed + 1] = key " +
+            "  end " +
+            "end " +
+            "return {result[1], removed}";
+    private static final byte[] SWEEP_SCRIPT_BYTES = SWEEP_SCRIPT.getBytes(StandardCharsets.UTF_8);
+
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+
     @Resource
-    private RedisTemplate<String, String> redisTemplate;
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Resource
+    private IdempotentProperties idempotentProperties;
+
+    @Resource
+    private IdempotentMetrics idempotentMetrics;
+
+    private StringRedisTemplate stateTemplate;
+
+    @PostConstruct
+    public void init() {
+        stateTemplate = new StringRedisTemplate(redisConnectionFactory);
+    }
 
-    // 每小时执行一次
-    @Scheduled(cron = "0 0 * * * ?")
+    @Scheduled(cron = "${idempotent.monitor.cron:0 0 * * * ?}")
     public void scanAndCleanIdempotentKeys() {
-        Set<String> keys = redisTemplate.keys("idempotent:*");
-        if (keys == null || keys.isEmpty()) {
+        IdempotentProperties.Monitor config = idempotentProperties.getMonitor();
+        String owner = UUID.randomUUID().toString();
+        Boolean locked = stateTemplate.opsForValue().setIfAbsent(
+                LOCK_KEY, owner, Duration.ofMillis(config.getMaxSweepMillis()).plusMinutes(1));
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("其他节点正在巡检幂等key，本次跳过");
             return;
         }
-        for (String key : keys) {
-            Long expire = redisTemplate.getExpire(key);
-            // expire == -1 表示没有设置过期时间
-            // expire == -2 表示key不存在
-            if (expire == null || expire == -1) {
-                // 发现异常key，进行删除和告警
-                redisTemplate.delete(key);
-                log.error("发现未设置过期时间的幂等key并已删除: " + key);
+        long deadline = System.currentTimeMillis() + config.getMaxSweepMillis();
+        long sweepStart = System.nanoTime();
+        boolean success = false;
+        try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+            if (connection instanceof RedisClusterConnection clusterConnection) {
+                sweepCluster(clusterConnection, config, deadline);
+            } else {
+                sweepNode(STANDALONE_NODE,
+                        args -> connection.scriptingCommands().eval(SWEEP_SCRIPT_BYTES, ReturnType.MULTI, 0, args),
+                        config, deadline);
             }
+            success = true;
+        } catch (Exception e) {
+            log.error("幂等key巡检失败", e);
+        } finally {
+            idempotentMetrics.recordMonitorSweep(sweepStart, success);
+            stateTemplate.execute(RELEASE_LOCK_SCRIPT, Collections.singletonList(LOCK_KEY), owner);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 集群模式：依次巡检每个master节点
+     */
+    @SuppressWarnings("unchecked")
+    private void sweepCluster(RedisClusterConnection clusterConnection, IdempotentProperties.Monitor config, long deadline) {
+        if (!(clusterConnection.getNativeConnection() instanceof RedisAdvancedClusterAsyncCommands<?, ?> nativeCommands)) {
+            log.warn("当前集群连接不是Lettuce连接，跳过幂等key巡检");
+            return;
+        }
+        RedisAdvancedClusterAsyncCommands<byte[], byte[]> commands = (RedisAdvancedClusterAsyncCommands<byte[], byte[]>) nativeCommands;
+        for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+            if (!node.isMaster()) {
+                continue;
+            }
+            RedisClusterAsyncCommands<byte[], byte[]> nodeCommands = commands.getConnection(node.getId());
+            boolean finished = sweepNode(node.getId(), args -> nodeCommands.<List<Object>>eval(
+                    SWEEP_SCRIPT, ScriptOutputType.MULTI, NO_KEYS, args).get(SCRIPT_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                    config, deadline);
+            if (!finished) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从上次保存的游标开始巡检单个节点
+     *
+     * @return 本节点是否已完整巡检一轮
+     */
+    @SuppressWarnings("unchecked")
+    private boolean sweepNode(String nodeId, SweepExecutor executor, IdempotentProperties.Monitor config, long deadline) {
+        Object saved = stateTemplate.opsForHash().get(CURSOR_KEY, nodeId);
+        String cursor = saved != null ? saved.toString() : "0";
+        byte[] pattern = KEY_PATTERN.getBytes(StandardCharsets.UTF_8);
+        byte[] count = String.valueOf(config.getScanCount()).getBytes(StandardCharsets.UTF_8);
+        long removedTotal = 0;
+        try {
+            while (true) {
+                List<Object> reply = executor.sweep(cursor.getBytes(StandardCharsets.UTF_8), pattern, count);
+                cursor = new String((byte[]) reply.get(0), StandardCharsets.UTF_8);
+                for (byte[] key : (List<byte[]>) reply.get(1)) {
+                    removedTotal++;
+                    log.error("发现未设置过期时间的幂等key并已删除: {}", new String(key, StandardCharsets.UTF_8));
+                }
+                if ("0".equals(cursor)) {
+                    stateTemplate.opsForHash().delete(CURSOR_KEY, nodeId);
+                    log.info("幂等key巡检完成, 节点: {}, 删除异常key: {}", nodeId, removedTotal);
+                    return true;
+                }
+                stateTemplate.opsForHash().put(CURSOR_KEY, nodeId, cursor);
+                if (System.currentTimeMillis() >= deadline) {
+                    log.info("幂等key巡检达到时间上限, 节点: {} 将从游标 {} 继续", nodeId, cursor);
+                    return false;
+                }
+                TimeUnit.MILLISECONDS.sleep(config.getPauseMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.error("幂等key巡检失败, 节点: {}, 游标: {}", nodeId, cursor, e);
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SweepExecutor {
+        List<Object> sweep(byte[]... args) throws Exception;
+    }
+}
@@ -1,30 +1,190 @@
 package api.idempotent.spring.monitor;
 
 
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.metrics.IdempotentMetrics;
+import api.idempotent.spring.store.IdempotentKeyLayout;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 延迟删除服务
+ * <p>到期任务由lua脚本原子地领取一批、删除对应key并出队，多节点并发执行也不会重复处理；
+ * 扫描间隔与批大小根据队列积压自适应调整。</p>
+ * <p>开启时间轮后任务优先在本地内存调度，到期后批量删除；redis延迟队列只作为持久化兜底，
+ * 时间轮溢出、批量删除失败以及应用停机时的未执行任务都会转存到redis队列。</p>
+ * <p>开启集群布局后队列按 {@link IdempotentKeyLayout} 拆分为多个带hash tag的分片，
+ * 每个分片独立自适应扫描，由多个线程并行处理，吞吐随master节点数扩展。
+ * 分片按存活的应用节点分配，每个节点只扫描分到的分片，见 {@link #heartbeat()}。</p>
+ * <p>队列成员按key的序列化方式写入；早期版本按value的序列化方式写入，启动时会把这类成员迁移为新格式，
+ * 见 {@link #migrateLegacyMembers()}。</p>
+ */
 @Component
 @Slf4j
+@ConditionalOnProperty(prefix = "idempotent", name = "store", havingValue = "redis", matchIfMissing = true)
 public class RedisDelayedDeleteService {
 
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
-    private static final String DELAY_DELETE_ZSET = "idempotent:delay:delete";
-    
+    @Resource
+    private IdempotentProperties idempotentProperties;
+
+    @Resource
+    private IdempotentMetrics idempotentMetrics;
+
+    @Resource
+    private IdempotentKeyLayout idempotentKeyLayout;
+
+    /**
+     * KEYS[1] 延迟队列, ARGV[1] 当前时间, ARGV[2] 批大小, ARGV[3] 可在脚本内删除的key前缀（可省略）
+     * 返回 {本批处理条数, 剩余到期积压, 最早到期任务的执行时间(无则-1), 需由客户端删除的key}
+     * <p>集群中脚本只能访问与队列同slot的key：集群布局下只删除带本分片前缀的成员，未开启集群布局时省略ARGV[3]，
+     * 全部交给客户端按slot分别删除；单机redis上前缀为空，全部在脚本内删除</p>
+     */
+    private static final byte[] DRAIN_SCRIPT = (
+            "local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "local prefix = ARGV[3] " +
+            "local foreign = {} " +
+            "for _, member in ipairs(due) do " +
+            "  if prefix and string.sub(member, 1, #prefix) == prefix then " +
+            "    redis.call('DEL', member) " +
+            "  else " +
+            "    foreign[#foreign + 1] = member " +
+            "  end " +
+            "end " +
+            "if #due > 0 then redis.call('ZREM', KEYS[1], unpack(due)) end " +
+            "local backlog = redis.call('ZCOUNT', KEYS[1], '-inf', ARGV[1]) " +
+            "local head = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES') " +
+            "local oldest = -1 " +
+            "if #head > 0 then oldest = tonumber(head[2]) end " +
+            "return {#due, backlog, oldest, foreign}").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * KEYS[1] 节点集合, ARGV[1] 本节点id, ARGV[2] 节点失效时长（毫秒）
+     * 以redis时间记录本节点心跳并移除失效节点，返回存活节点；各节点时钟不一致也不影响判断
+     */
+    private static final byte[] HEARTBEAT_SCRIPT = (
+            "local time = redis.call('TIME') " +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+            "redis.call('ZADD', KEYS[1], now, ARGV[1]) " +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - tonumber(ARGV[2])) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "return redis.call('ZRANGE', KEYS[1], 0, -1)").getBytes(StandardCharsets.UTF_8);
+
+    /** 参与分片分配的应用节点，成员为节点id，分数为最近一次心跳的redis时间 */
+    private static final String NODES_KEY = "idempotent:delay:nodes";
+
+    private static final RedisSerializer<String> STRING_SERIALIZER = new StringRedisSerializer();
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /** 本节点分到的分片，心跳成功前及单分片时负责全部分片 */
+    private volatile NodeAssignment assignment = NodeAssignment.ALL;
+
+    private ScheduledExecutorService drainExecutor;
+
+    private HashedTimingWheel<String> timingWheel;
+
+    /** 各分片队列的扫描状态，单机模式下只有一个 */
+    private DrainShard[] shards;
+
+    @PostConstruct
+    public void start() {
+        IdempotentProperties.DelayDelete config = idempotentProperties.getDelayDelete();
+        migrateLegacyMembers();
+        int shardCount = idempotentKeyLayout.getShards();
+        shards = new DrainShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new DrainShard(i, config);
+        }
+        int threads = Math.max(1, Math.min(shardCount, config.getDrainThreads()));
+        AtomicInteger threadIndex = new AtomicInteger();
+        drainExecutor = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, threads == 1 ? "idempotent-delay-delete"
+                    : "idempotent-delay-delete-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (shardCount > 1) {
+            heartbeat();
+            long heartbeatMillis = config.getNodeHeartbeatMillis();
+            drainExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+        for (DrainShard shard : shards) {
+            // 错开各分片的首次扫描，避免同时打到redis
+            long initialDelay = shard.intervalMillis + shard.index * shard.intervalMillis / shardCount;
+            drainExecutor.schedule(() -> drainAndReschedule(shard), initialDelay, TimeUnit.MILLISECONDS);
+        }
+        if (shardCount > 1) {
+            log.info("延迟删除队列按集群分片, 分片数: {}, 扫描线程: {}", shardCount, threads);
+        }
+        if (config.isTimingWheelEnabled()) {
+            timingWheel = new HashedTimingWheel<>("idempotent-delay-wheel", config.getTickMillis(),
+                    config.getWheelSize(), config.getMaxPending(), this::deleteExpired);
+            log.info("延迟删除时间轮已开启, tick: {}ms, 槽位: {}", config.getTickMillis(), config.getWheelSize());
+        }
+        idempotentMetrics.bindDelayDeleteQueue(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        drainExecutor.shutdownNow();
+        if (shards.length > 1) {
+            leave();
+        }
+        if (timingWheel != null) {
+            timingWheel.stop(remaining -> {
+                flushToQueue(remaining);
+                log.info("停机转存未执行的延迟删除任务: {}", remaining.size());
+            });
+        }
+    }
+
     /**
      * 添加延迟删除任务
+     * <p>成员按key的序列化方式写入，保证脚本中可直接作为key删除；集群模式下写入key所属分片的队列</p>
      */
     public void addDelayDeleteTask(String key, long delaySeconds) {
+        if (timingWheel != null && timingWheel.schedule(key, TimeUnit.SECONDS.toMillis(delaySeconds))) {
+            log.debug("添加延迟删除任务(时间轮), key: {}, 延迟: {}s", key, delaySeconds);
+            return;
+        }
         try {
             long executeTime = System.currentTimeMillis() + delaySeconds * 1000;
-            redisTemplate.opsForZSet().add(DELAY_DELETE_ZSET, key, executeTime);  // expire时间如果不需要可传0
+            RedisSerializer<String> keySerializer = keySerializer();
+            byte[] rawQueue = keySerializer.serialize(idempotentKeyLayout.delayQueue(idempotentKeyLayout.shardOf(key)));
+            byte[] rawKey = keySerializer.serialize(key);
+            redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                    connection.zSetCommands().zAdd(rawQueue, executeTime, rawKey));
             log.debug("添加延迟删除任务, key: {}, 执行时间: {}", key, executeTime);
         } catch (Exception e) {
             log.error("添加延迟删除任务失败, key: {}", key, e);
@@ -33,37 +193,345 @@ public class RedisDelayedDeleteService {
 
 
     /**
-     * 定时扫描并执行删除任务
+     * 时间轮到期回调：同一tick到期的key合并为一次批量删除，失败时转存到redis队列立即重试
      */
-    @Scheduled(fixedDelay = 2000) // 每两秒扫描一次
-    public void processDelayedDeletes() {
+    private void deleteExpired(List<String> keys) {
         try {
+            Long deleted = redisTemplate.delete(keys);
+            log.info("延迟删除成功(时间轮), 本批: {}, 实际删除: {}", keys.size(), deleted);
+        } catch (Exception e) {
+            log.error("时间轮批量删除失败，转存到延迟队列, 本批: {}", keys.size(), e);
             long now = System.currentTimeMillis();
-            // 获取所有到期的任务
-            Set<Object> keys = redisTemplate.opsForZSet().rangeByScore(
-                DELAY_DELETE_ZSET, 0, now
-            );
-
-            if (keys != null && !keys.isEmpty()) {
-                for (Object key : keys) {
-                        String strKey = key.toString();
-                    try {
-                        // 删除实际的key
-                        Boolean exists = redisTemplate.hasKey(strKey);
-                        if (Boolean.TRUE.equals(exists)) {
-                            redisTemplate.delete(strKey);
-                            log.info("延迟删除成功, key: {}", key);
-                        }
+            flushToQueue(keys.stream().map(key -> new HashedTimingWheel.Pending<>(key, now)).toList());
+        }
+    }
 
-                        // 从延迟队列中移除
-                        redisTemplate.opsForZSet().remove(DELAY_DELETE_ZSET, key);
-                    } catch (Exception e) {
-                        log.error("处理延迟删除任务失败, key: {}", key, e);
+    /**
+     * 迁移早期版本写入的队列成员
+     * <p>早期版本按value的序列化方式写入成员，key与value序列化方式不同时（如key为字符串、value为JSON）
+     * 这些成员无法作为key删除，对应的key会一直保留。启动时扫描原队列，把能按value方式解码为幂等key的成员
+     * 按key的序列化方式重新入队并保持原执行时间，再移除旧成员；多个节点同时迁移结果相同。
+     * 滚动升级期间已升级的节点可能先领取到旧成员，对应的key仍由有效期兜底过期。</p>
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyMembers() {
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        RedisSerializer<String> keySerializer = keySerializer();
+        if (valueSerializer == null || Arrays.equals(keySerializer.serialize(IdempotentKeyLayout.KEY_PREFIX),
+                valueSerializer.serialize(IdempotentKeyLayout.KEY_PREFIX))) {
+            return;
+        }
+        byte[] rawQueue = keySerializer.serialize(IdempotentKeyLayout.DELAY_QUEUE);
+        List<HashedTimingWheel.Pending<String>> tasks = new ArrayList<>();
+        List<byte[]> legacyMembers = new ArrayList<>();
+        try {
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                try (Cursor<Tuple> cursor = connection.zSetCommands().zScan(rawQueue,
+                        ScanOptions.scanOptions().count(500).build())) {
+                    while (cursor.hasNext()) {
+                        Tuple tuple = cursor.next();
+                        String key = decodeLegacyMember(valueSerializer, tuple.getValue());
+                        if (key != null) {
+                            tasks.add(new HashedTimingWheel.Pending<>(key, tuple.getScore().longValue()));
+                            legacyMembers.add(tuple.getValue());
+                        }
                     }
                 }
+                return null;
+            });
+            if (tasks.isEmpty()) {
+                return;
+            }
+            // 全部重新入队成功后才移除旧成员
+            if (flushToQueue(tasks)) {
+                byte[][] rawMembers = legacyMembers.toArray(new byte[0][]);
+                redisTemplate.execute((RedisCallback<Long>) connection ->
+                        connection.zSetCommands().zRem(rawQueue, rawMembers));
+                log.info("迁移旧版本延迟删除任务: {}", tasks.size());
             }
         } catch (Exception e) {
-            log.error("扫描延迟删除任务失败", e);
+            log.error("迁移旧版本延迟删除任务失败", e);
+        }
+    }
+
+    /**
+     * 按value的序列化方式解码旧成员，新格式的成员解码失败或不是幂等key，返回null
+     */
+    private static String decodeLegacyMember(RedisSerializer<Object> valueSerializer, byte[] member) {
+        try {
+            Object decoded = valueSerializer.deserialize(member);
+            return decoded instanceof String key && key.startsWith(IdempotentKeyLayout.KEY_PREFIX) ? key : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按分片分组，每个分片队列一次ZADD批量写入
+     *
+     * @return 是否全部写入成功
+     */
+    private boolean flushToQueue(List<HashedTimingWheel.Pending<String>> tasks) {
+        RedisSerializer<String> keySerializer = keySerializer();
+        Map<Integer, Set<Tuple>> tuplesByShard = new HashMap<>();
+        for (HashedTimingWheel.Pending<String> task : tasks) {
+            tuplesByShard.computeIfAbsent(idempotentKeyLayout.shardOf(task.task()), shard -> new HashSet<>())
+                    .add(new DefaultTuple(keySerializer.serialize(task.task()), (double) task.executeTime()));
+        }
+        boolean flushed = true;
+        for (Map.Entry<Integer, Set<Tuple>> entry : tuplesByShard.entrySet()) {
+            try {
+                byte[] rawQueue = keySerializer.serialize(idempotentKeyLayout.delayQueue(entry.getKey()));
+                redisTemplate.execute((RedisCallback<Long>) connection ->
+                        connection.zSetCommands().zAdd(rawQueue, entry.getValue()));
+            } catch (Exception e) {
+                flushed = false;
+                log.error("延迟删除任务转存失败, 分片: {}, 数量: {}", entry.getKey(), entry.getValue().size(), e);
+            }
+        }
+        return flushed;
+    }
+
+    /**
+     * 依次扫描每个分片队列，执行一批到期的删除任务
+     *
+     * @return 本批处理条数
+     */
+    public long processDelayedDeletes() {
+        long claimed = 0;
+        for (DrainShard shard : shards) {
+            claimed += processDelayedDeletes(shard);
+        }
+        return claimed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long processDelayedDeletes(DrainShard shard) {
+        try {
+            long now = System.currentTimeMillis();
+            byte[] rawNow = STRING_SERIALIZER.serialize(String.valueOf(now));
+            byte[] rawLimit = STRING_SERIALIZER.serialize(String.valueOf(shard.batchSize));
+            List<Object> reply = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+                if (!(connection instanceof RedisClusterConnection)) {
+                    return connection.scriptingCommands().eval(DRAIN_SCRIPT, ReturnType.MULTI, 1,
+                            shard.rawQueue, rawNow, rawLimit, new byte[0]);
+                }
+                return shard.rawPrefix != null
+                        ? connection.scriptingCommands().eval(DRAIN_SCRIPT, ReturnType.MULTI, 1,
+                                shard.rawQueue, rawNow, rawLimit, shard.rawPrefix)
+                        : connection.scriptingCommands().eval(DRAIN_SCRIPT, ReturnType.MULTI, 1,
+                                shard.rawQueue, rawNow, rawLimit);
+            });
+            shard.lastDrainLatencyMillis = System.currentTimeMillis() - now;
+            if (reply == null || reply.size() < 3) {
+                return 0;
+            }
+            long claimed = ((Number) reply.get(0)).longValue();
+            long oldest = ((Number) reply.get(2)).longValue();
+            shard.backlog = ((Number) reply.get(1)).longValue();
+            shard.drainLagMillis = oldest >= 0 && oldest <= now ? now - oldest : 0;
+            if (reply.size() > 3 && reply.get(3) instanceof List<?> foreign && !foreign.isEmpty()) {
+                byte[][] rawKeys = ((List<byte[]>) foreign).toArray(new byte[0][]);
+                redisTemplate.execute((RedisCallback<Long>) connection -> connection.keyCommands().del(rawKeys));
+            }
+            if (claimed > 0) {
+                log.info("延迟删除成功, 队列: {}, 本批: {}, 剩余积压: {}", shard.queue, claimed, shard.backlog);
+            }
+            return claimed;
+        } catch (Exception e) {
+            log.error("扫描延迟删除任务失败, 队列: {}", shard.queue, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 有积压时缩短间隔并放大批次，空闲时逐步退避；各分片独立调整
+     * <p>不属于本节点的分片按最长间隔检查分配，节点下线后接管的分片最迟一个最长间隔后开始扫描</p>
+     */
+    private void drainAndReschedule(DrainShard shard) {
+        IdempotentProperties.DelayDelete config = idempotentProperties.getDelayDelete();
+        try {
+            if (!assignment.owns(shard.index)) {
+                shard.backlog = 0;
+                shard.drainLagMillis = 0;
+                shard.batchSize = config.getMinBatchSize();
+                shard.intervalMillis = config.getMaxIntervalMillis();
+                return;
+            }
+            long claimed = processDelayedDeletes(shard);
+            if (shard.backlog > 0) {
+                shard.batchSize = Math.min(shard.batchSize * 2, config.getMaxBatchSize());
+                shard.intervalMillis = config.getMinIntervalMillis();
+            } else {
+                shard.batchSize = Math.max(shard.batchSize / 2, config.getMinBatchSize());
+                shard.intervalMillis = claimed > 0 ? config.getMinIntervalMillis()
+                        : Math.min(shard.intervalMillis * 2, config.getMaxIntervalMillis());
+            }
+        } finally {
+            if (!drainExecutor.isShutdown()) {
+                drainExecutor.schedule(() -> drainAndReschedule(shard), shard.intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 记录本节点心跳并按存活节点重新分配分片
+     * <p>存活节点按id排序，第i个节点负责序号对节点数取模等于i的分片；节点加入或下线后各节点在下一次心跳时
+     * 重新计算，切换期间同一分片可能被两个节点同时扫描，脚本原子领取保证不会重复处理。
+     * 心跳失败时保持原有分配，节点失效前其他节点不会接管。</p>
+     */
+    private void heartbeat() {
+        try {
+            byte[] rawNodes = STRING_SERIALIZER.serialize(NODES_KEY);
+            byte[] rawNodeId = STRING_SERIALIZER.serialize(nodeId);
+            byte[] rawExpiry = STRING_SERIALIZER.serialize(
+                    String.valueOf(idempotentProperties.getDelayDelete().getNodeHeartbeatMillis() * 3));
+            List<Object> reply = redisTemplate.execute((RedisCallback<List<Object>>) connection ->
+                    connection.scriptingCommands().eval(HEARTBEAT_SCRIPT, ReturnType.MULTI, 1,
+                            rawNodes, rawNodeId, rawExpiry));
+            if (reply == null) {
+                return;
+            }
+            List<String> nodes = new ArrayList<>(reply.size());
+            for (Object node : reply) {
+                nodes.add(STRING_SERIALIZER.deserialize((byte[]) node));
+            }
+            nodes.sort(null);
+            int index = nodes.indexOf(nodeId);
+            if (index < 0) {
+                return;
+            }
+            NodeAssignment next = new NodeAssignment(index, nodes.size());
+            if (!next.equals(assignment)) {
+                assignment = next;
+                log.info("延迟删除分片重新分配, 节点: {}, 存活节点: {}, 本节点序号: {}", nodeId, nodes.size(), index);
+            }
+        } catch (Exception e) {
+            log.error("延迟删除节点心跳失败, 节点: {}", nodeId, e);
+        }
+    }
+
+    /**
+     * 停机时移出节点集合，其他节点在下一次心跳时接管本节点的分片
+     */
+    private void leave() {
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.zSetCommands().zRem(
+                    STRING_SERIALIZER.serialize(NODES_KEY), STRING_SERIALIZER.serialize(nodeId)));
+        } catch (Exception e) {
+            log.warn("延迟删除节点退出失败, 节点: {}", nodeId, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<String> keySerializer() {
+        RedisSerializer<?> serializer = redisTemplate.getKeySerializer();
+        return serializer != null ? (RedisSerializer<String>) serializer : STRING_SERIALIZER;
+    }
+
+    /**
+     * 各分片剩余到期积压之和
+     */
+    public long getBacklog() {
+        long backlog = 0;
+        for (DrainShard shard : shards) {
+            backlog += shard.backlog;
+        }
+        return backlog;
+    }
+
+    /**
+     * 各分片中最大的处理滞后
+     */
+    public long getDrainLagMillis() {
+        long lag = 0;
+        for (DrainShard shard : shards) {
+            lag = Math.max(lag, shard.drainLagMillis);
+        }
+        return lag;
+    }
+
+    public long getLastDrainLatencyMillis() {
+        long latency = 0;
+        for (DrainShard shard : shards) {
+            latency = Math.max(latency, shard.lastDrainLatencyMillis);
+        }
+        return latency;
+    }
+
+    public int getBatchSize() {
+        int batchSize = 0;
+        for (DrainShard shard : shards) {
+            batchSize = Math.max(batchSize, shard.batchSize);
+        }
+        return batchSize;
+    }
+
+    public long getIntervalMillis() {
+        long interval = Long.MAX_VALUE;
+        for (DrainShard shard : shards) {
+            interval = Math.min(interval, shard.intervalMillis);
+        }
+        return interval;
+    }
+
+    /**
+     * 本地时间轮中挂起的任务数
+     */
+    public long getLocalPending() {
+        return timingWheel != null ? timingWheel.pending() : 0;
+    }
+
+    /**
+     * 队列总长度（含未到期任务），集群模式下为各分片之和
+     */
+    public long getQueueSize() {
+        long total = 0;
+        for (String queue : idempotentKeyLayout.delayQueues()) {
+            Long size = redisTemplate.opsForZSet().zCard(queue);
+            total += size != null ? size : 0;
+        }
+        return total;
+    }
+
+    /**
+     * 本节点在存活节点中的序号与存活节点数
+     */
+    private record NodeAssignment(int index, int count) {
+
+        private static final NodeAssignment ALL = new NodeAssignment(0, 1);
+
+        boolean owns(int shard) {
+            return shard % count == index;
+        }
+    }
+
+    /**
+     * 单个分片队列的扫描状态
+     */
+    private final class DrainShard {
+        private final int index;
+        private final String queue;
+        private final byte[] rawQueue;
+        /** redis集群中脚本内可直接删除的key前缀，未开启集群布局时为null，所有成员由客户端删除 */
+        private final byte[] rawPrefix;
+        private volatile long intervalMillis;
+        private volatile int batchSize;
+        /** 最近一次扫描后仍到期未处理的任务数 */
+        private volatile long backlog;
+        /** 最早到期任务已超时未处理的时长（毫秒） */
+        private volatile long drainLagMillis;
+        /** 最近一次脚本调用耗时（毫秒） */
+        private volatile long lastDrainLatencyMillis;
+
+        private DrainShard(int index, IdempotentProperties.DelayDelete config) {
+            this.index = index;
+            this.queue = idempotentKeyLayout.delayQueue(index);
+            this.rawQueue = keySerializer().serialize(queue);
+            this.rawPrefix = idempotentKeyLayout.isClusterEnabled()
+                    ? keySerializer().serialize(idempotentKeyLayout.shardPrefix(index)) : null;
+            this.intervalMillis = config.getMaxIntervalMillis();
+            this.batchSize = config.getMinBatchSize();
         }
     }
-}
\ No newline at end of file
+}
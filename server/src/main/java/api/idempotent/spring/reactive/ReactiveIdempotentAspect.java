@@ -0,0 +1,261 @@
+package api.idempotent.spring.reactive;
+
+import api.idempotent.ClientIpResolver;
+import api.idempotent.annotation.Idempotent;
+import api.idempotent.spring.aspect.CanonicalJsonHasher;
+import api.idempotent.spring.aspect.IdempotentKeyDigest;
+import api.idempotent.spring.bloom.IdempotentBloomFilters;
+import api.idempotent.spring.cache.IdempotentLocalCache;
+import api.idempotent.spring.cache.IdempotentMethodCache;
+import api.idempotent.spring.cache.IdempotentMethodMeta;
+import api.idempotent.spring.context.IdempotentContextResolver;
+import api.idempotent.spring.exception.IdempotentException;
+import api.idempotent.spring.metrics.IdempotentMetrics;
+import api.idempotent.spring.store.IdempotentKeyLayout;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.reactivestreams.Publisher;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应式幂等切面，拦截返回 Mono/Flux 的 @Idempotent 方法
+ * <p>占用key、执行业务、释放key都组合在返回的 Mono/Flux 中，订阅时才执行，不阻塞事件循环线程：</p>
+ * <ul>
+ *     <li>正常完成：开启delKey时延迟释放key</li>
+ *     <li>出错或被取消：开启delKey时立即释放key，客户端可以重试</li>
+ * </ul>
+ * <p>请求在WebFlux下从Reactor上下文读取（见 {@link ReactiveRequestContextFilter}），WebFlux无法重复读取请求体，
+ * key只包含参数、令牌、ip和端口；在Spring MVC中返回 Mono/Flux 时仍从当前线程读取请求，与同步切面一致；
+ * 都没有请求时（如响应式消息监听）key只由参数与 {@link IdempotentContextResolver} 生成。</p>
+ * <p>暂不支持 replayResult（重复请求按原方式拒绝）和验签。</p>
+ */
+@Slf4j
+@Aspect
+public class ReactiveIdempotentAspect {
+
+	@Resource
+	private IdempotentMethodCache methodCache;
+
+	@Resource
+	private ReactiveIdempotentStore reactiveIdempotentStore;
+
+	@Resource
+	private IdempotentLocalCache localCache;
+
+	@Resource
+	private IdempotentMetrics idempotentMetrics;
+
+	@Resource
+	private ClientIpResolver clientIpResolver;
+
+	@Resource
+	private IdempotentKeyLayout keyLayout;
+
+	@Resource
+	private IdempotentBloomFilters bloomFilters;
+
+	@Resource
+	private IdempotentContextResolver contextResolver;
+
+	@Around("@annotation(idempotent) && (execution(reactor.core.publisher.Mono+ *(..)) || execution(reactor.core.publisher.Flux+ *(..)))")
+	public Object around(ProceedingJoinPoint joinPoint, Idempotent idempotent) {
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		IdempotentMethodMeta meta = methodCache.getMeta(method);
+		if (meta == null) {
+			throw new IdempotentException("没找到对应类和方法的元数据 " + method);
+		}
+		IdempotentMetrics.MethodMeters meters = idempotentMetrics.method(meta);
+		if (idempotent.enableSignVerify()) {
+			return error(method, new IdempotentException("响应式方法暂不支持验签: " + method));
+		}
+
+		Mono<String> redisKey = buildKey(joinPoint, meta, meters);
+		if (Mono.class.isAssignableFrom(method.getReturnType())) {
+			return redisKey.flatMap(key -> Mono.usingWhen(
+					acquire(key, meta, meters),
+					acquired -> Mono.from(proceed(joinPoint)),
+					this::onComplete,
+					(acquired, e) -> onFailure(acquired, "业务异常"),
+					acquired -> onFailure(acquired, "订阅取消")));
+		}
+		return redisKey.flatMapMany(key -> Flux.usingWhen(
+				acquire(key, meta, meters),
+				acquired -> Flux.from(proceed(joinPoint)),
+				this::onComplete,
+				(acquired, e) -> onFailure(acquired, "业务异常"),
+				acquired -> onFailure(acquired, "订阅取消")));
+	}
+
+	/**
+	 * 占用key，重复请求以 {@link IdempotentException} 结束
+	 */
+	private Mono<Acquired> acquire(String redisKey, IdempotentMethodMeta meta, IdempotentMetrics.MethodMeters meters) {
+		Idempotent cachedAnno = meta.getIdempotent();
+		return Mono.defer(() -> {
+			// 概率模式只在布隆过滤器中判重，不占用存储
+			if (cachedAnno.type() == Idempotent.IdempotentType.PROBABILISTIC) {
+				long checkStart = System.nanoTime();
+				boolean fresh = bloomFilters.putIfAbsent(meta, redisKey);
+				meters.recordBloomCheck(checkStart, fresh);
+				if (!fresh) {
+					log.warn("重复请求触发幂等拦截(布隆过滤器), key: {}", redisKey);
+					return Mono.error(new IdempotentException(cachedAnno.info()));
+				}
+				return Mono.just(new Acquired(redisKey, cachedAnno));
+			}
+			// 本节点刚获取过的key直接本地拒绝，无需访问redis
+			if (localCache.isDuplicate(redisKey)) {
+				meters.localDuplicate();
+				log.warn("重复请求触发幂等拦截(本地缓存), key: {}", redisKey);
+				return Mono.error(new IdempotentException(cachedAnno.info()));
+			}
+			long acquireStart = System.nanoTime();
+			return reactiveIdempotentStore.acquire(redisKey, cachedAnno.expireTime(), cachedAnno.timeUnit())
+					.flatMap(acquired -> {
+						meters.recordAcquire(acquireStart, acquired);
+						if (!acquired) {
+							log.warn("重复请求触发幂等拦截, key: {}", redisKey);
+							return Mono.error(new IdempotentException(cachedAnno.info()));
+						}
+						localCache.put(redisKey, localTtlMillis(cachedAnno), TimeUnit.MILLISECONDS);
+						return Mono.just(new Acquired(redisKey, cachedAnno));
+					});
+		});
+	}
+
+	private Publisher<?> proceed(ProceedingJoinPoint joinPoint) {
+		try {
+			Object result = joinPoint.proceed();
+			return result != null ? (Publisher<?>) result : Mono.empty();
+		} catch (Throwable e) {
+			return Mono.error(e);
+		}
+	}
+
+	/**
+	 * 执行成功后不马上删除Key，让其自然过期 （如果配置）
+	 */
+	private Mono<Void> onComplete(Acquired acquired) {
+		if (!acquired.releasable()) {
+			return Mono.empty();
+		}
+		log.debug("业务完成删除幂等键, key: {}", acquired.key());
+		return reactiveIdempotentStore.releaseLater(acquired.key(), acquired.idempotent().delayCheckSeconds())
+				.onErrorResume(e -> {
+					log.warn("幂等键延迟释放失败, key: {}", acquired.key(), e);
+					return Mono.empty();
+				});
+	}
+
+	/**
+	 * 异常或取消时立即删除Key（如果配置）
+	 */
+	private Mono<Void> onFailure(Acquired acquired, String reason) {
+		if (!acquired.releasable()) {
+			return Mono.empty();
+		}
+		localCache.invalidate(acquired.key());
+		log.debug("{}删除幂等键, key: {}", reason, acquired.key());
+		return reactiveIdempotentStore.release(acquired.key())
+				.onErrorResume(e -> {
+					log.warn("幂等键释放失败, key: {}", acquired.key(), e);
+					return Mono.empty();
+				});
+	}
+
+	private Mono<String> buildKey(ProceedingJoinPoint joinPoint, IdempotentMethodMeta meta,
+								  IdempotentMetrics.MethodMeters meters) {
+		// Spring MVC中返回Mono/Flux：请求仍绑定在当前线程上
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes instanceof ServletRequestAttributes servletAttributes) {
+			HttpServletRequest request = servletAttributes.getRequest();
+			long keyStart = System.nanoTime();
+			IdempotentKeyDigest keyDigest = digestInvocation(joinPoint, meta);
+			// 请求体按规范化形式（与字段顺序无关）流式写入摘要
+			CanonicalJsonHasher.digestRequestBody(request, keyDigest);
+			String key = keyLayout.build(keyDigest, meta.getTokenHeader().resolve(request),
+					clientIpResolver.resolve(request), request.getRemotePort());
+			meters.recordKeyDerivation(keyStart);
+			return Mono.just(key);
+		}
+		// WebFlux：从Reactor上下文读取请求
+		return ReactiveRequestContextFilter.currentRequest()
+				.map(request -> {
+					long keyStart = System.nanoTime();
+					InetSocketAddress remoteAddress = request.getRemoteAddress();
+					String key = keyLayout.build(digestInvocation(joinPoint, meta),
+							meta.getTokenHeader().resolve(request.getHeaders()),
+							clientIpResolver.resolve(request), remoteAddress != null ? remoteAddress.getPort() : -1);
+					meters.recordKeyDerivation(keyStart);
+					return key;
+				})
+				.switchIfEmpty(Mono.defer(() -> {
+					if (contextResolver.isRequireRequest()) {
+						return Mono.error(new IdempotentException(
+								"当前上下文中不存在请求，请确认已注册 ReactiveRequestContextFilter"));
+					}
+					// 消息监听等没有请求的调用：只由参数与上下文提供者生成key
+					long keyStart = System.nanoTime();
+					String key = keyLayout.build(digestInvocation(joinPoint, meta),
+							contextResolver.resolve(meta, joinPoint.getArgs()));
+					meters.recordKeyDerivation(keyStart);
+					return Mono.just(key);
+				}));
+	}
+
+	/**
+	 * 自定义SPEL表达式，或默认的 类名+方法名+参数哈希
+	 */
+	private IdempotentKeyDigest digestInvocation(ProceedingJoinPoint joinPoint, IdempotentMethodMeta meta) {
+		IdempotentKeyDigest keyDigest = IdempotentKeyDigest.begin();
+		if (meta.getKeyExpression() != null) {
+			keyDigest.append(meta.evaluateKey(joinPoint.getArgs()));
+		} else {
+			keyDigest.append(meta.getClassName()).append('.').append(meta.getMethodName())
+					.append(':').append(IdempotentKeyDigest.argsHash(joinPoint.getArgs()));
+		}
+		return keyDigest;
+	}
+
+	/**
+	 * 本地缓存存活时长与redis一致；开启delKey时key可能在delayCheckSeconds后被删除，取两者较小值
+	 */
+	private long localTtlMillis(Idempotent idempotent) {
+		long ttlMillis = idempotent.timeUnit().toMillis(idempotent.expireTime());
+		if (idempotent.delKey()) {
+			ttlMillis = Math.min(ttlMillis, TimeUnit.SECONDS.toMillis(idempotent.delayCheckSeconds()));
+		}
+		return ttlMillis;
+	}
+
+	private static Object error(Method method, Throwable e) {
+		return Mono.class.isAssignableFrom(method.getReturnType()) ? Mono.error(e) : Flux.error(e);
+	}
+
+	/**
+	 * 已占用的key
+	 */
+	private record Acquired(String key, Idempotent idempotent) {
+
+		/**
+		 * 开启delKey时释放；概率模式的key写入布隆过滤器，无法释放
+		 */
+		boolean releasable() {
+			return idempotent.delKey() && idempotent.type() != Idempotent.IdempotentType.PROBABILISTIC;
+		}
+	}
+}
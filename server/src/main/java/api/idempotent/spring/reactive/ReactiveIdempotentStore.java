@@ -0,0 +1,53 @@
+package api.idempotent.spring.reactive;
+
+import api.idempotent.spring.store.IdempotentStore;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 非阻塞的幂等key存储，供返回 Mono/Flux 的方法使用
+ * <p>默认实现为 {@link ReactiveRedisIdempotentStore}；也可以自行实现并注册为bean替换默认实现。</p>
+ */
+public interface ReactiveIdempotentStore {
+
+	/**
+	 * key不存在时占用并设置有效期
+	 *
+	 * @return 占用成功返回true，key已存在（重复请求）返回false
+	 */
+	Mono<Boolean> acquire(String key, long ttl, TimeUnit timeUnit);
+
+	/**
+	 * 立即释放key
+	 */
+	Mono<Void> release(String key);
+
+	/**
+	 * 延迟释放key
+	 */
+	Mono<Void> releaseLater(String key, long delaySeconds);
+
+	/**
+	 * 将本身不阻塞的 {@link IdempotentStore}（如内存存储）适配为响应式存储
+	 * <p>各操作在订阅线程上直接执行，不能用于访问网络的实现。</p>
+	 */
+	static ReactiveIdempotentStore nonBlocking(IdempotentStore idempotentStore) {
+		return new ReactiveIdempotentStore() {
+			@Override
+			public Mono<Boolean> acquire(String key, long ttl, TimeUnit timeUnit) {
+				return Mono.fromSupplier(() -> idempotentStore.acquire(key, ttl, timeUnit));
+			}
+
+			@Override
+			public Mono<Void> release(String key) {
+				return Mono.fromRunnable(() -> idempotentStore.release(key));
+			}
+
+			@Override
+			public Mono<Void> releaseLater(String key, long delaySeconds) {
+				return Mono.fromRunnable(() -> idempotentStore.releaseLater(key, delaySeconds));
+			}
+		};
+	}
+}
@@ -0,0 +1,57 @@
+package api.idempotent.spring.reactive;
+
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 {@link ReactiveStringRedisTemplate} 的幂等key存储
+ * <p>延迟释放不经过延迟删除队列，而是把key的剩余有效期缩短到延迟时长，由redis自行过期删除；
+ * 剩余有效期本来就更短时保持不变。</p>
+ */
+public class ReactiveRedisIdempotentStore implements ReactiveIdempotentStore {
+
+	private static final String PLACEHOLDER = "1";
+
+	/**
+	 * KEYS[1] 幂等key, ARGV[1] 延迟毫秒数
+	 * key不存在时不处理；没有有效期或剩余有效期更长时改为延迟时长
+	 */
+	private static final RedisScript<Long> SHORTEN_TTL_SCRIPT = RedisScript.of(
+			"local ttl = redis.call('PTTL', KEYS[1]) " +
+			"if ttl == -1 or ttl > tonumber(ARGV[1]) then " +
+			"  return redis.call('PEXPIRE', KEYS[1], ARGV[1]) " +
+			"end " +
+			"return 0", Long.class);
+
+	private final ReactiveStringRedisTemplate redisTemplate;
+
+	public ReactiveRedisIdempotentStore(ReactiveRedisConnectionFactory connectionFactory) {
+		this.redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+	}
+
+	@Override
+	public Mono<Boolean> acquire(String key, long ttl, TimeUnit timeUnit) {
+		return redisTemplate.opsForValue()
+				.setIfAbsent(key, PLACEHOLDER, Duration.ofMillis(timeUnit.toMillis(ttl)))
+				.map(isAbsent -> !Boolean.FALSE.equals(isAbsent));
+	}
+
+	@Override
+	public Mono<Void> release(String key) {
+		return redisTemplate.delete(key).then();
+	}
+
+	@Override
+	public Mono<Void> releaseLater(String key, long delaySeconds) {
+		List<String> keys = Collections.singletonList(key);
+		return redisTemplate.execute(SHORTEN_TTL_SCRIPT, keys,
+				Collections.singletonList(String.valueOf(TimeUnit.SECONDS.toMillis(delaySeconds)))).then();
+	}
+}
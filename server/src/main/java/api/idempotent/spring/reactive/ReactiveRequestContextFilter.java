@@ -0,0 +1,35 @@
+package api.idempotent.spring.reactive;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * 将当前 {@link ServerWebExchange} 写入Reactor上下文
+ * <p>WebFlux下没有 RequestContextHolder，响应式切面通过 {@link #currentRequest()} 在订阅时读取请求。</p>
+ */
+public class ReactiveRequestContextFilter implements WebFilter, Ordered {
+
+	private static final Class<ServerWebExchange> EXCHANGE_KEY = ServerWebExchange.class;
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		return chain.filter(exchange).contextWrite(context -> context.put(EXCHANGE_KEY, exchange));
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+
+	/**
+	 * 当前订阅所属的请求，不在WebFlux请求内时为空
+	 */
+	public static Mono<ServerHttpRequest> currentRequest() {
+		return Mono.deferContextual(context -> Mono.justOrEmpty(context.<ServerWebExchange>getOrEmpty(EXCHANGE_KEY)))
+				.map(ServerWebExchange::getRequest);
+	}
+}
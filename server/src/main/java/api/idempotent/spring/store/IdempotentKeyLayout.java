@@ -0,0 +1,114 @@
+package api.idempotent.spring.store;
+
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.aspect.IdempotentKeyDigest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 幂等key与延迟删除队列的命名布局
+ * <p>单机模式下key为 {@code idempotent:<token>:<ip>:<port>:<sha256>}，延迟删除队列只有一个ZSET，与原先一致。</p>
+ * <p>集群模式下key由摘要分到 {@code shards} 个分片之一，并以分片号作为hash tag紧跟在前缀之后：
+ * {@code idempotent:{n}:<token>:<ip>:<port>:<sha256>}；每个分片对应一个同样带tag的延迟队列
+ * {@code idempotent:delay:delete:{n}}，队列与其中的key位于同一slot，删除脚本不会跨slot。
+ * tag必须放在token和ip之前，否则其中出现的 '{' 会改变redis计算slot时识别的tag。</p>
+ */
+public class IdempotentKeyLayout {
+
+	public static final String KEY_PREFIX = "idempotent:";
+	public static final String DELAY_QUEUE = "idempotent:delay:delete";
+
+	private final boolean clusterEnabled;
+	private final int shards;
+	/** 各分片的key前缀 idempotent:{n}: */
+	private final String[] shardPrefixes;
+	private final List<String> delayQueues;
+
+	public IdempotentKeyLayout(IdempotentProperties idempotentProperties) {
+		IdempotentProperties.Cluster config = idempotentProperties.getCluster();
+		this.clusterEnabled = config.isEnabled();
+		this.shards = clusterEnabled ? Math.max(1, config.getShards()) : 1;
+		this.shardPrefixes = new String[shards];
+		List<String> queues = new ArrayList<>(shards);
+		for (int i = 0; i < shards; i++) {
+			if (clusterEnabled) {
+				shardPrefixes[i] = KEY_PREFIX + "{" + i + "}:";
+				queues.add(DELAY_QUEUE + ":{" + i + "}");
+			} else {
+				shardPrefixes[i] = KEY_PREFIX;
+				queues.add(DELAY_QUEUE);
+			}
+		}
+		this.delayQueues = Collections.unmodifiableList(queues);
+	}
+
+	/**
+	 * 结束摘要并生成幂等key，keyDigest中只能写入了key内容，key缓冲须为空
+	 */
+	public String build(IdempotentKeyDigest keyDigest, String tokenValue, String ipAddress, int port) {
+		keyDigest.finish();
+		String prefix = clusterEnabled ? shardPrefixes[keyDigest.shard(shards)] : KEY_PREFIX;
+		keyDigest.keyBuilder().append(prefix).append(tokenValue).append(':').append(ipAddress)
+				.append(':').append(port).append(':');
+		return keyDigest.appendHex().toString();
+	}
+
+	/**
+	 * 结束摘要并生成不含请求信息的幂等key：{@code idempotent:[{n}:]<namespace>:<sha256>}，用于批量接口和没有请求的调用
+	 */
+	public String build(IdempotentKeyDigest keyDigest, String namespace) {
+		keyDigest.finish();
+		String prefix = clusterEnabled ? shardPrefixes[keyDigest.shard(shards)] : KEY_PREFIX;
+		keyDigest.keyBuilder().append(prefix).append(namespace).append(':');
+		return keyDigest.appendHex().toString();
+	}
+
+	/**
+	 * key所属的分片：带分片tag的key按tag，其余key（单机布局下生成的旧key等）按hash分配
+	 */
+	public int shardOf(String key) {
+		if (!clusterEnabled) {
+			return 0;
+		}
+		int start = KEY_PREFIX.length();
+		if (key.startsWith(KEY_PREFIX) && key.length() > start + 2 && key.charAt(start) == '{') {
+			int shard = 0;
+			int i = start + 1;
+			for (; i < key.length() && Character.isDigit(key.charAt(i)) && shard < shards; i++) {
+				shard = shard * 10 + (key.charAt(i) - '0');
+			}
+			if (i > start + 1 && i < key.length() && key.charAt(i) == '}' && shard < shards) {
+				return shard;
+			}
+		}
+		return (key.hashCode() & Integer.MAX_VALUE) % shards;
+	}
+
+	/**
+	 * 分片中key的公共前缀，单机模式下为 idempotent:
+	 */
+	public String shardPrefix(int shard) {
+		return shardPrefixes[shard];
+	}
+
+	public String delayQueue(int shard) {
+		return delayQueues.get(shard);
+	}
+
+	/**
+	 * 全部延迟删除队列，单机模式下只有一个
+	 */
+	public List<String> delayQueues() {
+		return delayQueues;
+	}
+
+	public int getShards() {
+		return shards;
+	}
+
+	public boolean isClusterEnabled() {
+		return clusterEnabled;
+	}
+}
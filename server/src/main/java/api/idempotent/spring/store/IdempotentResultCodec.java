@@ -0,0 +1,109 @@
+package api.idempotent.spring.store;
+
+import api.idempotent.spring.IdempotentProperties;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+/**
+ * 幂等结果编解码
+ * <p>格式：2字节魔数 + 1字节版本 + Smile二进制JSON；只有魔数头没有正文表示结果为null（如void方法）。
+ * 反序列化使用方法声明的返回类型，不需要在数据中携带类型信息。</p>
+ * <p>分布式等待时key上的状态：占位值为执行中，执行结果或 {@link #SUCCEEDED} 为已成功，{@link #FAILED} 为已失败。</p>
+ */
+@Slf4j
+@Component
+public class IdempotentResultCodec {
+
+	private static final byte[] HEADER = {'I', 'R', 1};
+	/** 执行成功但未缓存结果 */
+	private static final byte[] SUCCEEDED = {'I', 'S', 1};
+	/** 执行失败 */
+	private static final byte[] FAILED = {'I', 'F', 1};
+
+	private final ObjectMapper mapper = new SmileMapper();
+	private final int maxBytes;
+
+	public IdempotentResultCodec(IdempotentProperties idempotentProperties) {
+		this.maxBytes = idempotentProperties.getResultMaxBytes();
+	}
+
+	/**
+	 * 编码执行结果
+	 *
+	 * @return 超出大小限制或无法序列化时返回null
+	 */
+	public byte[] encode(Object result) {
+		if (result == null) {
+			return HEADER.clone();
+		}
+		try {
+			byte[] body = mapper.writeValueAsBytes(result);
+			if (body.length + HEADER.length > maxBytes) {
+				log.warn("幂等结果超出大小限制, 不缓存: {} > {}", body.length + HEADER.length, maxBytes);
+				return null;
+			}
+			byte[] payload = Arrays.copyOf(HEADER, HEADER.length + body.length);
+			System.arraycopy(body, 0, payload, HEADER.length, body.length);
+			return payload;
+		} catch (IOException e) {
+			log.warn("幂等结果序列化失败, 不缓存: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 是否为本编码器写入的结果（区别于占位值）
+	 */
+	public boolean isResult(byte[] payload) {
+		return payload != null && payload.length >= HEADER.length
+				&& payload[0] == HEADER[0] && payload[1] == HEADER[1] && payload[2] == HEADER[2];
+	}
+
+	/**
+	 * 成功状态标记
+	 */
+	public byte[] succeeded() {
+		return SUCCEEDED.clone();
+	}
+
+	/**
+	 * 失败状态标记
+	 */
+	public byte[] failed() {
+		return FAILED.clone();
+	}
+
+	/**
+	 * key上保存的值对应的执行状态
+	 *
+	 * @param payload key上的值，null表示未读到（key不存在，或存储只在有结果时返回值）
+	 * @return payload为null时返回null，由调用方判断key是否存在
+	 */
+	public IdempotentState state(byte[] payload) {
+		if (payload == null) {
+			return null;
+		}
+		if (isResult(payload) || Arrays.equals(payload, SUCCEEDED)) {
+			return IdempotentState.SUCCEEDED;
+		}
+		return Arrays.equals(payload, FAILED) ? IdempotentState.FAILED : IdempotentState.PROCESSING;
+	}
+
+	/**
+	 * 按方法返回类型解码
+	 */
+	public Object decode(byte[] payload, Type returnType) throws IOException {
+		if (payload.length == HEADER.length) {
+			return null;
+		}
+		JavaType javaType = mapper.constructType(returnType);
+		return mapper.readValue(payload, HEADER.length, payload.length - HEADER.length, javaType);
+	}
+}
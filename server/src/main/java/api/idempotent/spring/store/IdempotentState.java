@@ -0,0 +1,13 @@
+package api.idempotent.spring.store;
+
+/**
+ * 幂等key上的执行状态，用于分布式等待
+ */
+public enum IdempotentState {
+	/** 首个请求仍在执行 */
+	PROCESSING,
+	/** 首个请求执行成功 */
+	SUCCEEDED,
+	/** 首个请求执行失败，或key已被释放 */
+	FAILED
+}
@@ -0,0 +1,135 @@
+package api.idempotent.spring.store;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等key存储
+ * <p>切面只依赖该接口，默认实现为 {@link RedisIdempotentStore}；单实例服务或测试环境可使用
+ * {@link MemoryIdempotentStore}，也可以自行实现并注册为bean替换默认实现。</p>
+ */
+public interface IdempotentStore {
+
+	/**
+	 * key不存在时占用并设置有效期
+	 *
+	 * @return 占用成功返回true，key已存在（重复请求）返回false
+	 */
+	boolean acquire(String key, long ttl, TimeUnit timeUnit);
+
+	/**
+	 * 立即释放key
+	 */
+	void release(String key);
+
+	/**
+	 * 延迟释放key
+	 */
+	void releaseLater(String key, long delaySeconds);
+
+	/**
+	 * 异步占用key，供返回 CompletableFuture 的方法使用，调用线程不等待存储响应
+	 * <p>默认在调用线程上同步执行，访问网络的实现应覆盖为非阻塞实现</p>
+	 */
+	default CompletionStage<Boolean> acquireAsync(String key, long ttl, TimeUnit timeUnit) {
+		return CompletableFuture.completedFuture(acquire(key, ttl, timeUnit));
+	}
+
+	/**
+	 * 异步释放key
+	 */
+	default CompletionStage<Void> releaseAsync(String key) {
+		release(key);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * key是否已被占用（仍在有效期内）
+	 */
+	boolean exists(String key);
+
+	/**
+	 * 以租约方式占用key：key带有租约标记，有效期为leaseMillis
+	 *
+	 * @return 占用成功返回true，key已存在（重复请求）返回false
+	 */
+	boolean acquireLease(String key, long leaseMillis);
+
+	/**
+	 * 异步以租约方式占用key
+	 * <p>默认在调用线程上同步执行，访问网络的实现应覆盖为非阻塞实现</p>
+	 */
+	default CompletionStage<Boolean> acquireLeaseAsync(String key, long leaseMillis) {
+		return CompletableFuture.completedFuture(acquireLease(key, leaseMillis));
+	}
+
+	/**
+	 * 批量续期仍带有租约标记的key，返回的位图中第i位为1表示第i个key续期成功
+	 * <p>判断标记与续期必须是一个原子操作：{@link #completeLease} 之后仍在途的续期不能再改动key的有效期</p>
+	 */
+	BitSet renewLeases(List<String> keys, long leaseMillis);
+
+	/**
+	 * 结束租约：清除租约标记并把有效期设为ttl，与 {@link #renewLeases} 互斥，之后key不会再被续期
+	 *
+	 * @return key已不存在或不在租约中时返回false
+	 */
+	boolean completeLease(String key, long ttl, TimeUnit timeUnit);
+
+	/**
+	 * 批量占用，返回的位图中第i位为1表示第i个key占用成功，为0表示已存在（重复）
+	 * <p>默认逐个调用 {@link #acquire}，访问网络的实现应覆盖为一次往返</p>
+	 */
+	default BitSet acquireAll(List<String> keys, long ttl, TimeUnit timeUnit) {
+		BitSet acquired = new BitSet(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			if (acquire(keys.get(i), ttl, timeUnit)) {
+				acquired.set(i);
+			}
+		}
+		return acquired;
+	}
+
+	/**
+	 * 批量立即释放
+	 */
+	default void releaseAll(List<String> keys) {
+		keys.forEach(this::release);
+	}
+
+	/**
+	 * 批量查询，返回的位图中第i位为1表示第i个key已被占用
+	 */
+	default BitSet existsAll(List<String> keys) {
+		BitSet exists = new BitSet(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			if (exists(keys.get(i))) {
+				exists.set(i);
+			}
+		}
+		return exists;
+	}
+
+	/**
+	 * 清理没有有效期的异常key
+	 */
+	void sweep();
+
+	/**
+	 * 将执行结果写入已占用的key，沿用key原有的有效期；key已不存在时不写入
+	 */
+	default void saveResult(String key, byte[] payload) {
+	}
+
+	/**
+	 * 读取key上保存的执行结果
+	 *
+	 * @return 未保存结果（包括仍在执行中）时返回null
+	 */
+	default byte[] getResult(String key) {
+		return null;
+	}
+}
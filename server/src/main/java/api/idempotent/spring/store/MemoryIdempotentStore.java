@@ -0,0 +1,179 @@
+package api.idempotent.spring.store;
+
+import api.idempotent.spring.IdempotentProperties;
+import api.idempotent.spring.monitor.HashedTimingWheel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于内存的幂等key存储
+ * <p>key -> 过期时刻（nanoTime）保存在 {@link ConcurrentHashMap} 中，占用通过 putIfAbsent/replace 的CAS完成，
+ * 不需要额外加锁；过期与延迟释放由时间轮批量处理，释放时只移除与调度时相同的那一次占用，不会误删重新占用的key。
+ * 读取时同样按过期时刻判断，时间轮挂起任务已满未能调度时key照常过期，由定时清理回收。</p>
+ * <p>只在单个JVM内有效，适用于单实例服务和测试环境。</p>
+ */
+@Slf4j
+public class MemoryIdempotentStore implements IdempotentStore {
+
+	private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+	/** replayResult缓存的执行结果，随key一起释放 */
+	private final Map<String, byte[]> results = new ConcurrentHashMap<>();
+	/** 租约中的key；续期在computeIfPresent中进行，与结束租约时的remove互斥 */
+	private final Map<String, Boolean> leases = new ConcurrentHashMap<>();
+	private final HashedTimingWheel<Expiry> expiryWheel;
+
+	public MemoryIdempotentStore(IdempotentProperties idempotentProperties) {
+		IdempotentProperties.Memory config = idempotentProperties.getMemory();
+		this.expiryWheel = new HashedTimingWheel<>("idempotent-memory-expiry", config.getTickMillis(),
+				config.getWheelSize(), config.getMaxPending(), this::expire);
+		log.info("幂等key使用内存存储, tick: {}ms", config.getTickMillis());
+	}
+
+	@Override
+	public boolean acquire(String key, long ttl, TimeUnit timeUnit) {
+		long now = System.nanoTime();
+		Long deadline = now + timeUnit.toNanos(ttl);
+		Long previous = deadlines.putIfAbsent(key, deadline);
+		if (previous != null) {
+			// 仍在有效期内为重复请求；已过期但尚未被清理的旧值通过CAS替换
+			if (previous - now > 0 || !deadlines.replace(key, previous, deadline)) {
+				return false;
+			}
+			results.remove(key);
+			leases.remove(key);
+		}
+		scheduleExpiry(key, deadline, timeUnit.toMillis(ttl));
+		return true;
+	}
+
+	@Override
+	public boolean acquireLease(String key, long leaseMillis) {
+		if (!acquire(key, leaseMillis, TimeUnit.MILLISECONDS)) {
+			return false;
+		}
+		leases.put(key, Boolean.TRUE);
+		return true;
+	}
+
+	@Override
+	public BitSet renewLeases(List<String> keys, long leaseMillis) {
+		BitSet renewed = new BitSet(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			boolean[] success = new boolean[1];
+			leases.computeIfPresent(keys.get(i), (key, lease) -> {
+				success[0] = expire(key, leaseMillis, TimeUnit.MILLISECONDS);
+				return success[0] ? lease : null;
+			});
+			if (success[0]) {
+				renewed.set(i);
+			}
+		}
+		return renewed;
+	}
+
+	@Override
+	public boolean completeLease(String key, long ttl, TimeUnit timeUnit) {
+		return leases.remove(key) != null && expire(key, ttl, timeUnit);
+	}
+
+	@Override
+	public void release(String key) {
+		deadlines.remove(key);
+		results.remove(key);
+		leases.remove(key);
+	}
+
+	@Override
+	public boolean exists(String key) {
+		Long deadline = deadlines.get(key);
+		return deadline != null && deadline - System.nanoTime() > 0;
+	}
+
+	/**
+	 * 替换为新的过期时刻，原过期任务因deadline不同而失效
+	 */
+	private boolean expire(String key, long ttl, TimeUnit timeUnit) {
+		long now = System.nanoTime();
+		Long deadline = now + timeUnit.toNanos(ttl);
+		Long previous = deadlines.get(key);
+		if (previous == null || previous - now <= 0 || !deadlines.replace(key, previous, deadline)) {
+			return false;
+		}
+		scheduleExpiry(key, deadline, timeUnit.toMillis(ttl));
+		return true;
+	}
+
+	/**
+	 * 调度过期清理；时间轮已满时只影响回收时机，读取时按过期时刻判断，过期后由 {@link #sweep()} 回收
+	 */
+	private void scheduleExpiry(String key, Long deadline, long delayMillis) {
+		if (!expiryWheel.schedule(new Expiry(key, deadline), delayMillis)) {
+			log.warn("内存过期任务已满，key将在读取时按有效期判断过期并由定时清理回收: {}", key);
+		}
+	}
+
+	@Override
+	public void releaseLater(String key, long delaySeconds) {
+		Long deadline = deadlines.get(key);
+		if (deadline != null && !expiryWheel.schedule(new Expiry(key, deadline), TimeUnit.SECONDS.toMillis(delaySeconds))) {
+			log.warn("内存延迟释放任务已满，key将在有效期结束后释放: {}", key);
+		}
+	}
+
+	@Override
+	@Scheduled(cron = "${idempotent.monitor.cron:0 0 * * * ?}")
+	public void sweep() {
+		long now = System.nanoTime();
+		deadlines.entrySet().removeIf(entry -> entry.getValue() - now <= 0);
+		results.keySet().removeIf(key -> !deadlines.containsKey(key));
+		leases.keySet().removeIf(key -> !deadlines.containsKey(key));
+	}
+
+	@Override
+	public void saveResult(String key, byte[] payload) {
+		Long deadline = deadlines.get(key);
+		if (deadline != null && deadline - System.nanoTime() > 0) {
+			results.put(key, payload);
+		}
+	}
+
+	@Override
+	public byte[] getResult(String key) {
+		Long deadline = deadlines.get(key);
+		return deadline != null && deadline - System.nanoTime() > 0 ? results.get(key) : null;
+	}
+
+	/**
+	 * 当前占用的key数量（含已过期未清理的）
+	 */
+	public int size() {
+		return deadlines.size();
+	}
+
+	@PreDestroy
+	public void stop() {
+		expiryWheel.stop();
+	}
+
+	private void expire(List<Expiry> expired) {
+		for (Expiry expiry : expired) {
+			if (deadlines.remove(expiry.key(), expiry.deadline())) {
+				results.remove(expiry.key());
+				leases.remove(expiry.key());
+			}
+		}
+	}
+
+	/**
+	 * 一次占用的过期/释放任务，deadline用于识别是否仍是同一次占用
+	 */
+	private record Expiry(String key, Long deadline) {
+	}
+}
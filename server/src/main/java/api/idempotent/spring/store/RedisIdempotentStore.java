@@ -0,0 +1,294 @@
+package api.idempotent.spring.store;
+
+import api.idempotent.spring.monitor.IdempotentKeyMonitor;
+import api.idempotent.spring.monitor.RedisDelayedDeleteService;
+import io.lettuce.core.cluster.SlotHash;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于redis的幂等key存储（默认实现）
+ */
+public class RedisIdempotentStore implements IdempotentStore {
+
+	/** 占位值 */
+	private static final String PLACEHOLDER = "1";
+	/** 租约中的占位值，结束租约时替换为 PLACEHOLDER */
+	private static final String LEASE = "lease";
+
+	/**
+	 * KEYS 要占用的key, ARGV[1] 有效期（毫秒）, ARGV[2] 占位值
+	 * 返回位图：第i个key占用成功时第i位为1
+	 */
+	private static final byte[] ACQUIRE_ALL_SCRIPT = bitmapScript("redis.call('SET', key, ARGV[2], 'NX', 'PX', ARGV[1])");
+
+	/**
+	 * KEYS 要续期的key, ARGV[1] 有效期（毫秒）, ARGV[2] 租约占位值
+	 * 返回位图：第i个key仍在租约中并续期成功时第i位为1
+	 */
+	private static final byte[] RENEW_LEASES_SCRIPT = bitmapScript(
+			"redis.call('GET', key) == ARGV[2] and redis.call('PEXPIRE', key, ARGV[1]) == 1");
+
+	/**
+	 * KEYS[1] key, ARGV[1] 租约占位值, ARGV[2] 占位值, ARGV[3] 最终有效期（毫秒）
+	 * 仍在租约中时替换为占位值并设置最终有效期，返回1；否则返回0
+	 */
+	private static final byte[] COMPLETE_LEASE_SCRIPT = (
+			"if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+			"  redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) " +
+			"  return 1 " +
+			"end " +
+			"return 0").getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * KEYS 要查询的key，返回位图：第i个key存在时第i位为1
+	 */
+	private static final byte[] EXISTS_ALL_SCRIPT = bitmapScript("redis.call('EXISTS', key) == 1");
+
+	private final RedisTemplate<String, Object> redisTemplate;
+	private final RedisDelayedDeleteService redisDelayedDeleteService;
+	private final IdempotentKeyMonitor idempotentKeyMonitor;
+
+	public RedisIdempotentStore(RedisTemplate<String, Object> redisTemplate,
+								RedisDelayedDeleteService redisDelayedDeleteService,
+								IdempotentKeyMonitor idempotentKeyMonitor) {
+		this.redisTemplate = redisTemplate;
+		this.redisDelayedDeleteService = redisDelayedDeleteService;
+		this.idempotentKeyMonitor = idempotentKeyMonitor;
+	}
+
+	@Override
+	public boolean acquire(String key, long ttl, TimeUnit timeUnit) {
+		Boolean isAbsent = redisTemplate.opsForValue().setIfAbsent(key, PLACEHOLDER, ttl, timeUnit);
+		return !Boolean.FALSE.equals(isAbsent);
+	}
+
+	/**
+	 * Lettuce连接工厂同时是响应式连接工厂，通过其异步命令执行SET NX，不占用调用线程
+	 */
+	@Override
+	public CompletionStage<Boolean> acquireAsync(String key, long ttl, TimeUnit timeUnit) {
+		ReactiveRedisConnectionFactory connectionFactory = reactiveConnectionFactory();
+		if (connectionFactory == null) {
+			return IdempotentStore.super.acquireAsync(key, ttl, timeUnit);
+		}
+		return setIfAbsentAsync(connectionFactory, key, PLACEHOLDER, Expiration.from(ttl, timeUnit));
+	}
+
+	@Override
+	public boolean acquireLease(String key, long leaseMillis) {
+		Boolean isAbsent = redisTemplate.opsForValue().setIfAbsent(key, LEASE, leaseMillis, TimeUnit.MILLISECONDS);
+		return !Boolean.FALSE.equals(isAbsent);
+	}
+
+	@Override
+	public CompletionStage<Boolean> acquireLeaseAsync(String key, long leaseMillis) {
+		ReactiveRedisConnectionFactory connectionFactory = reactiveConnectionFactory();
+		if (connectionFactory == null) {
+			return IdempotentStore.super.acquireLeaseAsync(key, leaseMillis);
+		}
+		return setIfAbsentAsync(connectionFactory, key, LEASE, Expiration.milliseconds(leaseMillis));
+	}
+
+	private CompletionStage<Boolean> setIfAbsentAsync(ReactiveRedisConnectionFactory connectionFactory, String key,
+													  String value, Expiration expiration) {
+		ReactiveRedisConnection connection = connectionFactory.getReactiveConnection();
+		return connection.stringCommands()
+				.set(ByteBuffer.wrap(rawKey(key)), ByteBuffer.wrap(rawValue(value)), expiration,
+						RedisStringCommands.SetOption.ifAbsent())
+				.defaultIfEmpty(false)
+				.doFinally(signal -> connection.close())
+				.toFuture();
+	}
+
+	@Override
+	public void release(String key) {
+		redisTemplate.delete(key);
+	}
+
+	@Override
+	public CompletionStage<Void> releaseAsync(String key) {
+		ReactiveRedisConnectionFactory connectionFactory = reactiveConnectionFactory();
+		if (connectionFactory == null) {
+			return IdempotentStore.super.releaseAsync(key);
+		}
+		ReactiveRedisConnection connection = connectionFactory.getReactiveConnection();
+		return connection.keyCommands().del(ByteBuffer.wrap(rawKey(key)))
+				.doFinally(signal -> connection.close())
+				.then()
+				.toFuture();
+	}
+
+	@Override
+	public boolean exists(String key) {
+		return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+	}
+
+	/**
+	 * 一个lua脚本完成整批SET NX，集群模式下每个slot一个脚本
+	 */
+	@Override
+	public BitSet acquireAll(List<String> keys, long ttl, TimeUnit timeUnit) {
+		byte[] rawTtl = String.valueOf(timeUnit.toMillis(ttl)).getBytes(StandardCharsets.UTF_8);
+		return evalBitmap(ACQUIRE_ALL_SCRIPT, keys, rawTtl, rawValue(PLACEHOLDER));
+	}
+
+	@Override
+	public BitSet renewLeases(List<String> keys, long leaseMillis) {
+		return evalBitmap(RENEW_LEASES_SCRIPT, keys, String.valueOf(leaseMillis).getBytes(StandardCharsets.UTF_8),
+				rawValue(LEASE));
+	}
+
+	@Override
+	public boolean completeLease(String key, long ttl, TimeUnit timeUnit) {
+		byte[] rawKey = rawKey(key);
+		byte[] rawTtl = String.valueOf(timeUnit.toMillis(ttl)).getBytes(StandardCharsets.UTF_8);
+		Long completed = redisTemplate.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+				.eval(COMPLETE_LEASE_SCRIPT, ReturnType.INTEGER, 1, rawKey, rawValue(LEASE), rawValue(PLACEHOLDER), rawTtl));
+		return Long.valueOf(1).equals(completed);
+	}
+
+	@Override
+	public BitSet existsAll(List<String> keys) {
+		return evalBitmap(EXISTS_ALL_SCRIPT, keys);
+	}
+
+	/**
+	 * 一次DEL删除整批key，集群连接会按slot拆分
+	 */
+	@Override
+	public void releaseAll(List<String> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		byte[][] rawKeys = keys.stream().map(this::rawKey).toArray(byte[][]::new);
+		redisTemplate.execute((RedisCallback<Long>) connection -> connection.keyCommands().del(rawKeys));
+	}
+
+	@Override
+	public void releaseLater(String key, long delaySeconds) {
+		redisDelayedDeleteService.addDelayDeleteTask(key, delaySeconds);
+	}
+
+	@Override
+	public void sweep() {
+		idempotentKeyMonitor.scanAndCleanIdempotentKeys();
+	}
+
+	/**
+	 * SET key payload XX KEEPTTL：只覆盖仍存在的key，并保留其剩余有效期
+	 */
+	@Override
+	public void saveResult(String key, byte[] payload) {
+		byte[] rawKey = rawKey(key);
+		redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+				.set(rawKey, payload, Expiration.keepTtl(), RedisStringCommands.SetOption.ifPresent()));
+	}
+
+	@Override
+	public byte[] getResult(String key) {
+		byte[] rawKey = rawKey(key);
+		return redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+	}
+
+	private BitSet evalBitmap(byte[] script, List<String> keys, byte[]... args) {
+		BitSet result = new BitSet(keys.size());
+		if (keys.isEmpty()) {
+			return result;
+		}
+		byte[][] rawKeys = keys.stream().map(this::rawKey).toArray(byte[][]::new);
+		redisTemplate.execute((RedisCallback<Void>) connection -> {
+			for (int[] group : slotGroups(connection, rawKeys)) {
+				byte[][] keysAndArgs = new byte[group.length + args.length][];
+				for (int i = 0; i < group.length; i++) {
+					keysAndArgs[i] = rawKeys[group[i]];
+				}
+				System.arraycopy(args, 0, keysAndArgs, group.length, args.length);
+				byte[] bitmap = connection.scriptingCommands().eval(script, ReturnType.VALUE, group.length, keysAndArgs);
+				for (int i = 0; bitmap != null && i < group.length; i++) {
+					if ((bitmap[i >> 3] & (0x80 >>> (i & 7))) != 0) {
+						result.set(group[i]);
+					}
+				}
+			}
+			return null;
+		});
+		return result;
+	}
+
+	/**
+	 * 集群中一个脚本只能访问同一slot的key，按slot分组；单机时整批为一组
+	 */
+	private static List<int[]> slotGroups(RedisConnection connection, byte[][] rawKeys) {
+		if (!(connection instanceof RedisClusterConnection)) {
+			int[] all = new int[rawKeys.length];
+			for (int i = 0; i < all.length; i++) {
+				all[i] = i;
+			}
+			return List.of(all);
+		}
+		Map<Integer, List<Integer>> bySlot = new LinkedHashMap<>();
+		for (int i = 0; i < rawKeys.length; i++) {
+			bySlot.computeIfAbsent(SlotHash.getSlot(rawKeys[i]), slot -> new ArrayList<>()).add(i);
+		}
+		List<int[]> groups = new ArrayList<>(bySlot.size());
+		for (List<Integer> group : bySlot.values()) {
+			groups.add(group.stream().mapToInt(Integer::intValue).toArray());
+		}
+		return groups;
+	}
+
+	/**
+	 * 逐个key求值test，结果按redis位图的位序（第0位为第0个字节的最高位）打包返回
+	 */
+	private static byte[] bitmapScript(String test) {
+		return ("local bits = {128, 64, 32, 16, 8, 4, 2, 1} " +
+				"local bytes = {} " +
+				"local current = 0 " +
+				"for i, key in ipairs(KEYS) do " +
+				"  if " + test + " then current = current + bits[(i - 1) % 8 + 1] end " +
+				"  if i % 8 == 0 then " +
+				"    bytes[#bytes + 1] = string.char(current) " +
+				"    current = 0 " +
+				"  end " +
+				"end " +
+				"if #KEYS % 8 ~= 0 then bytes[#bytes + 1] = string.char(current) end " +
+				"return table.concat(bytes)").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private ReactiveRedisConnectionFactory reactiveConnectionFactory() {
+		RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+		return connectionFactory instanceof ReactiveRedisConnectionFactory reactive ? reactive : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] rawValue(Object value) {
+		RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+		return valueSerializer != null ? valueSerializer.serialize(value) : value.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] rawKey(String key) {
+		RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+		return keySerializer != null ? keySerializer.serialize(key) : key.getBytes(StandardCharsets.UTF_8);
+	}
+}